@@ -16,15 +16,23 @@ fi
 
 # --- Replay Shield 요청/응답 처리 ---
 LOG_FILE="/var/log/replayshield.log"
-SERVER_URL="${REPLAYSHIELD_URL:-http://127.0.0.1:4444/auth}"
+SOCKET="${REPLAYSHIELD_SOCKET:-/run/replayshield/auth.sock}"
 TIMEOUT="${REPLAYSHIELD_TIMEOUT:-3}"
 
+# 기본은 Unix 소켓. REPLAYSHIELD_URL이 지정되면 TCP(serve --tcp)로 요청
+if [ -n "${REPLAYSHIELD_URL:-}" ]; then
+    set -- "$REPLAYSHIELD_URL"
+else
+    set -- --unix-socket "$SOCKET" "http://localhost/auth"
+fi
+
 response="$(
     curl -sS --max-time "$TIMEOUT" --retry 0 \
         -H 'Content-Type: application/x-www-form-urlencoded' \
         --data-urlencode "username=${USER}" \
         --data-urlencode "password=${PASS}" \
-        -X POST "$SERVER_URL" 2>/dev/null || true
+        --data-urlencode "rhost=${PAM_RHOST:-}" \
+        -X POST "$@" 2>/dev/null || true
 )"
 
 case "$response" in
@@ -36,6 +44,14 @@ case "$response" in
         echo "$(date): authentication failed for ${USER}" >> "$LOG_FILE"
         exit 1
         ;;
+    RATE_LIMITED)
+        echo "$(date): rate limited for ${USER} from ${PAM_RHOST:-unknown}" >> "$LOG_FILE"
+        exit 1
+        ;;
+    BUSY)
+        echo "$(date): server busy, rejecting ${USER}" >> "$LOG_FILE"
+        exit 1
+        ;;
     *)
         echo "$(date): unexpected response '${response}' for ${USER}" >> "$LOG_FILE"
         exit 2
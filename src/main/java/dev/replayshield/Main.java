@@ -2,12 +2,15 @@ package dev.replayshield;
 
 import java.io.Console;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermissions;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -26,11 +29,20 @@ import dev.replayshield.db.SecureDbSession;
 import dev.replayshield.db.SecureDbSession.DbSession;
 import dev.replayshield.security.AdminKeyHolder;
 import dev.replayshield.security.KeyLoader;
+import dev.replayshield.security.PasswordDigest;
+import dev.replayshield.security.SegmentedCipherFile;
+import dev.replayshield.server.AuthBenchmark;
+import dev.replayshield.server.AuthEngine;
+import dev.replayshield.server.BinaryAuthProtocol;
 import dev.replayshield.server.HttpAuthServer;
+import dev.replayshield.server.HttpTransport;
+import dev.replayshield.server.KeepAliveAuthClient;
 import dev.replayshield.server.PamAuthHandler;
 import dev.replayshield.util.AsciiTable;
+import dev.replayshield.util.ConfigWatcher;
 import dev.replayshield.util.ErrorReporter;
 import dev.replayshield.util.PathResolver;
+import dev.replayshield.util.ReplayShieldConfig;
 import dev.replayshield.util.ReplayShieldException;
 import dev.replayshield.util.ReplayShieldException.ErrorType;
 
@@ -39,12 +51,19 @@ public class Main {
     // 콘솔 선언
     public static final Console CONSOLE = System.console();
     private static final int MIN_PASSWORD_POOL_SIZE = 3;
+    // serve 종료 순서 실행 여부
+    private static boolean serverStopped;
 
     public static void main(String[] args) {
         Thread.setDefaultUncaughtExceptionHandler(
                 (thread, throwable) -> ErrorReporter.logFatal("Thread " + thread.getName(), throwable));
 
-        consoleClear();
+        // auth-client/auth-pipe/bench는 stdout을 결과 출력에 쓰므로 화면 정리 생략
+        boolean clientMode = args.length > 0
+                && ("auth-client".equals(args[0]) || "auth-pipe".equals(args[0]) || "bench".equals(args[0]));
+        if (!clientMode) {
+            consoleClear();
+        }
 
         // sudo 검사
         if (!"root".equals(System.getProperty("user.name"))) {
@@ -52,8 +71,9 @@ public class Main {
             return;
         }
 
-        // 종료용 server 변수
+        // 종료용 server / 설정 감시 변수
         HttpAuthServer server = null;
+        ConfigWatcher configWatcher = null;
 
         // 메인 플로우 실행
         try {
@@ -91,7 +111,32 @@ public class Main {
                     runManageMode();
                 }
                 case "serve" -> {
-                    server = runServerMode(); // server 인스턴스 받음 (종료용)
+                    // serve [engine] [--tcp] [--transport jdk|nio] - 생략한 항목은 설정 파일 값 (기본 striped, jdk, TCP 없음)
+                    Path configFile = PathResolver.getConfigFile().toPath();
+                    ReplayShieldConfig config = ReplayShieldConfig.load(configFile);
+                    AuthEngine.Kind engineKind = AuthEngine.Kind.fromName(config.startup().engine());
+                    HttpTransport.Kind transportKind = HttpTransport.Kind.fromName(config.startup().transport());
+                    boolean tcp = config.startup().tcpEnabled();
+                    for (int i = 1; i < args.length; i++) {
+                        if ("--tcp".equals(args[i])) {
+                            tcp = true;
+                        } else if ("--transport".equals(args[i]) && i + 1 < args.length) {
+                            transportKind = HttpTransport.Kind.fromName(args[++i]);
+                        } else {
+                            engineKind = AuthEngine.Kind.fromName(args[i]);
+                        }
+                    }
+                    server = runServerMode(config, engineKind, transportKind, tcp); // server 인스턴스 받음 (종료용)
+
+                    // 파일 변경(systemctl reload 포함) 시 live 항목만 교체
+                    configWatcher = new ConfigWatcher(configFile, config, server::applyLiveSettings);
+                    configWatcher.start();
+
+                    // SIGTERM(systemctl stop) / Ctrl+C - drain 후 저장, 키 삭제까지 끝나야 JVM 종료
+                    HttpAuthServer running = server;
+                    ConfigWatcher watcher = configWatcher;
+                    Runtime.getRuntime().addShutdownHook(
+                            new Thread(() -> shutdownServer(running, watcher), "replayshield-shutdown"));
 
                     // 서버 유지
                     synchronized (server) {
@@ -103,6 +148,27 @@ public class Main {
                         }
                     }
                 }
+                case "auth-client" -> {
+                    // auth-client <username> [rhost] - 바이너리 프로토콜 소켓으로 인증 1건 시험
+                    if (args.length < 2) {
+                        System.err.println("Usage: replayshield auth-client <username> [rhost]");
+                        return;
+                    }
+                    runAuthClient(args[1], args.length > 2 ? args[2] : null);
+                }
+                case "bench" -> {
+                    // bench <username> [connections] [requests] [--users N] [--tcp] - 실행 중인 serve에 부하 측정
+                    if (args.length < 2) {
+                        System.err.println(
+                                "Usage: replayshield bench <username> [connections] [requests] [--users N] [--tcp]");
+                        return;
+                    }
+                    runBenchmark(args);
+                }
+                case "auth-pipe" -> {
+                    // stdin 줄마다 인증 1건, 연결 하나를 유지하며 응답을 stdout에 한 줄씩 출력
+                    KeepAliveAuthClient.pipe(PathResolver.getAuthSocketFile().toPath(), System.in, System.out);
+                }
                 case "password" -> {
 
                     // 콘솔 사용 가능 먼저 확인
@@ -123,13 +189,13 @@ public class Main {
             } else {
                 ErrorReporter.logError("main", exception);
             }
-        } catch (IOException | NoSuchAlgorithmException | NumberFormatException
+        } catch (IOException | NumberFormatException
                 | SQLException exception) {
             ErrorReporter.logError("main", exception);
         } finally {
             // System.out.println("FINALLY Check");
             if (server != null) {
-                server.stop(1); // 필요에 따라 delay 지정
+                shutdownServer(server, configWatcher);
             }
             AdminKeyHolder.clear();
         }
@@ -139,8 +205,11 @@ public class Main {
             Usage: replayshield <command>
             init : admin credentials and database
             manage : administrator CLI
-            serve : Start HTTP auth server
+            serve [striped|single-writer|memory] [--tcp] [--transport jdk|nio] : Start auth server on Unix socket (--tcp adds 127.0.0.1:4444, defaults from /etc/replayshield/replayshield.conf)
             password : Cache admin password in RAM for headless serve
+            auth-client <username> [rhost] : Send one auth request over the binary protocol socket
+            bench <username> [connections] [requests] [--users N] [--tcp] : Measure throughput and latency of a running server
+            auth-pipe : Read "username<TAB>password[<TAB>rhost]" lines from stdin over one keep-alive connection
             """;
 
     // ================================
@@ -161,7 +230,8 @@ public class Main {
             System.out.println("WARNING: ReplayShield is already initialized.");
             System.out.println("This will DELETE existing:");
             System.out.println("- /etc/replayshield/salt.bin");
-            System.out.println("- /var/lib/replayshield/secure.db.enc");
+            System.out.println("- /var/lib/replayshield/secure.db.enc (and secure.db.enc.prev)");
+            System.out.println("- /var/lib/replayshield/secure.db.journal");
             System.out.println("All user data and PW pools will be permanently lost.");
             System.out.print("Are you sure you want to reinitialize? (yes/no): ");
 
@@ -175,6 +245,8 @@ public class Main {
             // 파일 삭제
             Files.deleteIfExists(PathResolver.getSaltFile().toPath());
             Files.deleteIfExists(PathResolver.getEncryptedDbFile().toPath());
+            Files.deleteIfExists(SegmentedCipherFile.previousFile(PathResolver.getEncryptedDbFile().toPath()));
+            Files.deleteIfExists(PathResolver.getJournalFile().toPath());
         }
 
         // 실제 init 진행
@@ -190,7 +262,8 @@ public class Main {
     // ================================
     // SERVER 모드
     // ================================
-    private static HttpAuthServer runServerMode() throws IOException {
+    private static HttpAuthServer runServerMode(ReplayShieldConfig config, AuthEngine.Kind engineKind,
+            HttpTransport.Kind transportKind, boolean tcp) throws IOException {
         byte[] key = tryConsumeCachedAdminKey();
         if (key == null) {
             throw new ReplayShieldException(
@@ -198,14 +271,118 @@ public class Main {
                     "No cached admin password found. Run 'replayshield password' before starting the server.");
         }
         AdminKeyHolder.setKey(key);
-        int port = 4444;
-        HttpAuthServer server = new HttpAuthServer(port, key);
+        InetSocketAddress tcpAddress = tcp ? tcpAddress(config) : null;
+        Path socketPath = PathResolver.getAuthSocketFile().toPath();
+        Path binarySocketPath = PathResolver.getBinaryAuthSocketFile().toPath();
+        HttpAuthServer server = new HttpAuthServer(tcpAddress, socketPath, binarySocketPath, key, engineKind,
+                transportKind, config.startup().maxBodyBytes(), config.live());
         server.start();
-        System.out.println("ReplayShield server running on port " + port);
+        System.out.println("ReplayShield server listening on " + socketPath + ", " + binarySocketPath
+                + (tcp ? " and " + config.startup().tcpBindAddress() + ":" + config.startup().tcpPort() : "")
+                + " (engine: " + engineKind.configName()
+                + ", transport: " + transportKind.configName() + ")");
         System.out.println("Use Ctrl+C to stop.");
         return server; // main()에 서버 종료용으로 인스턴스 반환
     }
 
+    // 종료 순서 실행 후 단계별 소요 시간 출력.
+    // shutdown hook과 main finally 중 먼저 도착한 쪽이 실행하고, 나중 쪽은 끝날 때까지 기다림 (저장 중 JVM 종료 방지)
+    private static synchronized void shutdownServer(HttpAuthServer server, ConfigWatcher configWatcher) {
+        if (serverStopped) {
+            return;
+        }
+        serverStopped = true;
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        HttpAuthServer.ShutdownReport report = server.shutdown();
+        // 저장이 끝난 뒤에 키 삭제 (상주 DB가 같은 키 배열을 사용)
+        AdminKeyHolder.clear();
+        // shutdown hook 중에는 로그 핸들러가 이미 닫혔을 수 있으므로 표준 출력으로
+        System.out.println("ReplayShield server stopped: " + report);
+    }
+
+    private static InetSocketAddress tcpAddress(ReplayShieldConfig config) {
+        return new InetSocketAddress(config.startup().tcpBindAddress(), config.startup().tcpPort());
+    }
+
+    // ================================
+    // AUTH-CLIENT 모드 (시험용)
+    // ================================
+    private static void runAuthClient(String username, String rhost) throws IOException {
+        byte[] password = readClientPassword();
+        if (password == null) {
+            return;
+        }
+        try {
+            byte reply = BinaryAuthProtocol.call(PathResolver.getBinaryAuthSocketFile().toPath(), username,
+                    password, rhost);
+            System.out.println(BinaryAuthProtocol.replyName(reply));
+        } finally {
+            Arrays.fill(password, (byte) 0);
+        }
+    }
+
+    // ================================
+    // BENCH 모드 (전송 계층 비교용)
+    // ================================
+    private static void runBenchmark(String[] args) throws IOException {
+        String username = args[1];
+        int connections = 8;
+        int requests = 1_000;
+        int users = 1;
+        boolean tcp = false;
+        int positional = 0;
+        for (int i = 2; i < args.length; i++) {
+            if ("--tcp".equals(args[i])) {
+                tcp = true;
+            } else if ("--users".equals(args[i]) && i + 1 < args.length) {
+                users = Integer.parseInt(args[++i]);
+            } else if (positional++ == 0) {
+                connections = Integer.parseInt(args[i]);
+            } else {
+                requests = Integer.parseInt(args[i]);
+            }
+        }
+        byte[] password = readClientPassword();
+        if (password == null) {
+            return;
+        }
+        try {
+            SocketAddress address = tcp
+                    ? tcpAddress(ReplayShieldConfig.load(PathResolver.getConfigFile().toPath()))
+                    : UnixDomainSocketAddress.of(PathResolver.getAuthSocketFile().toPath());
+            System.out.println(AuthBenchmark.run(address, AuthBenchmark.usernames(username, users), password,
+                    connections, requests));
+        } finally {
+            Arrays.fill(password, (byte) 0);
+        }
+    }
+
+    // TTY면 에코 없이 입력, 아니면 stdin 첫 줄 (PAM expose_authtok과 같은 방식). 입력 취소 시 null
+    private static byte[] readClientPassword() throws IOException {
+        if (CONSOLE != null) {
+            char[] chars = CONSOLE.readPassword("Password: ");
+            if (chars == null) {
+                return null;
+            }
+            ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars));
+            byte[] password = new byte[encoded.remaining()];
+            encoded.get(password);
+            Arrays.fill(chars, '\0');
+            Arrays.fill(encoded.array(), (byte) 0);
+            return password;
+        }
+        byte[] input = System.in.readAllBytes();
+        int length = input.length;
+        while (length > 0 && (input[length - 1] == '\n' || input[length - 1] == '\r')) {
+            length--;
+        }
+        byte[] password = Arrays.copyOf(input, length);
+        Arrays.fill(input, (byte) 0);
+        return password;
+    }
+
     private static void cacheAdminPassword() {
         consoleClear("[ Cache Admin Password ]");
         byte[] key = KeyLoader.verifyAdminPassword();
@@ -255,7 +432,7 @@ public class Main {
     // ================================
     // MANAGE 모드 (관리자 CLI)
     // ================================
-    private static void runManageMode() throws SQLException, ReplayShieldException, NoSuchAlgorithmException {
+    private static void runManageMode() throws SQLException, ReplayShieldException {
         byte[] key = KeyLoader.verifyAdminPassword();
         AdminKeyHolder.setKey(key);
         consoleClear();
@@ -293,7 +470,7 @@ public class Main {
     }
 
     private static void manageAddUser(byte[] key)
-            throws SQLException, NoSuchAlgorithmException, ReplayShieldException {
+            throws SQLException, ReplayShieldException {
         consoleClear("[ Add New User ]");
         String username;
         while (true) {
@@ -385,14 +562,14 @@ public class Main {
                 ps.executeUpdate();
             }
             for (char[] pw : pwList) {
-                String hash = PamAuthPasswordUtil.hashPassword(pw);
+                byte[] hash = PamAuthPasswordUtil.hashPassword(pw);
                 String hint = PamAuthPasswordUtil.makeHint(pw);
                 try (PreparedStatement ps = conn.prepareStatement("""
                         INSERT INTO password_pool(username, pw_hash, pw_hint, hit_count, blocked)
                         VALUES(?, ?, ?, 0, 0)
                         """)) {
                     ps.setString(1, username);
-                    ps.setString(2, hash);
+                    ps.setBytes(2, hash);
                     ps.setString(3, hint);
                     ps.executeUpdate();
                 }
@@ -472,7 +649,7 @@ public class Main {
     }
 
     private static void manageUserMenu(byte[] key)
-            throws SQLException, ReplayShieldException, NoSuchAlgorithmException {
+            throws SQLException, ReplayShieldException {
         String username;
         while (true) {
             System.out.print("Target username (type CANCEL to cancel): ");
@@ -564,17 +741,17 @@ public class Main {
     }
 
     private static void addUserPassword(byte[] key, String username)
-            throws SQLException, NoSuchAlgorithmException, ReplayShieldException {
+            throws SQLException, ReplayShieldException {
         consoleClear("[ Manage User: " + username + " ]");
         // 1) 기존 해시 목록 수집
-        Set<String> existingHashes = new HashSet<>();
+        Set<ByteBuffer> existingHashes = new HashSet<>();
         try (var session = SecureDbSession.openReadOnly(key);
                 var ps = session.connection().prepareStatement(
                         "SELECT pw_hash FROM password_pool WHERE username=?")) {
             ps.setString(1, username);
             try (var rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    existingHashes.add(rs.getString(1));
+                    existingHashes.add(ByteBuffer.wrap(rs.getBytes(1)));
                 }
             }
         }
@@ -603,8 +780,8 @@ public class Main {
             Arrays.fill(confirm, '\0');
 
             // 중복검사
-            String newHash = PamAuthPasswordUtil.hashPassword(pw);
-            if (existingHashes.contains(newHash)) {
+            byte[] newHash = PamAuthPasswordUtil.hashPassword(pw);
+            if (existingHashes.contains(ByteBuffer.wrap(newHash))) {
                 System.out.println("This password is already registered. Enter a different one.");
                 Arrays.fill(pw, '\0'); // 즉시 삭제
                 continue;
@@ -620,7 +797,7 @@ public class Main {
                     VALUES(?, ?, ?, 0, 0)
                     """)) {
                 ps.setString(1, username);
-                ps.setString(2, newHash);
+                ps.setBytes(2, newHash);
                 ps.setString(3, hint);
                 ps.executeUpdate();
             }
@@ -714,8 +891,8 @@ public class Main {
                                 ps.setString(2, username);
                                 ps.executeUpdate();
                             }
-                            // block 대상 계산
-                            PamAuthHandler.refreshBlockedState(conn, username, newBlockCount);
+                            // 줄어든 block_count에 맞춰 차이만큼만 조정
+                            PamAuthHandler.adjustBlockedWindow(conn, username, newBlockCount);
                             conn.commit(); // DB 커밋
                             consoleClear("[ Password deleted. block_count=" + newBlockCount + " ]");
                             return;
@@ -780,7 +957,7 @@ public class Main {
                 ps.setString(2, username);
                 ps.executeUpdate();
             }
-            PamAuthHandler.refreshBlockedState(conn, username, bc);
+            PamAuthHandler.adjustBlockedWindow(conn, username, bc);
             consoleClear("block_count updated.");
         }
     }
@@ -834,7 +1011,7 @@ public class Main {
                         table.addRow(
                                 String.valueOf(rs.getInt("id")),
                                 rs.getString("username"),
-                                rs.getString("pw_hash"),
+                                Base64.getEncoder().encodeToString(rs.getBytes("pw_hash")),
                                 rs.getString("pw_hint"),
                                 String.valueOf(rs.getInt("hit_count")),
                                 rs.getInt("blocked") == 1 ? "YES" : "NO",
@@ -864,7 +1041,7 @@ public class Main {
                         table.addRow(
                                 String.valueOf(rs.getInt("id")),
                                 rs.getString("username"),
-                                rs.getString("pw_hash"),
+                                Base64.getEncoder().encodeToString(rs.getBytes("pw_hash")),
                                 rs.getString("pw_hint"),
                                 time);
                     }
@@ -877,11 +1054,12 @@ public class Main {
 
     // 암호 변경
     private static void manageChangeAdminPassword(byte[] key) throws SQLException, ReplayShieldException {
-        byte[] updated = KeyLoader.changeAdminPassword(key);
-        if (updated != null) {
-            AdminKeyHolder.setKey(updated);
+        // 데이터 키는 그대로 - 새 암호로 다시 봉인만 됨
+        if (KeyLoader.changeAdminPassword(key)) {
+            consoleClear("Admin password updated.");
+        } else {
+            consoleClear("Admin password unchanged.");
         }
-        consoleClear("Admin password updated.");
     }
 
     // ================================
@@ -890,12 +1068,9 @@ public class Main {
     // 비밀번호 해시/힌트용
     static class PamAuthPasswordUtil {
 
-        static String hashPassword(char[] pw) throws NoSuchAlgorithmException {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] bytes = new String(pw).getBytes(StandardCharsets.UTF_8);
-            byte[] digest = md.digest(bytes);
-            Arrays.fill(bytes, (byte) 0); // 사용 후 지우기
-            return Base64.getEncoder().encodeToString(digest);
+        // 32바이트 digest - 중간 String 없이 char[]에서 바로 계산
+        static byte[] hashPassword(char[] pw) {
+            return PasswordDigest.sha256(pw);
         }
 
         static String makeHint(char[] pw) {
@@ -926,13 +1101,6 @@ public class Main {
         }
     }
 
-    public static void deleteQuietly(Path tmp) {
-        try {
-            Files.deleteIfExists(tmp);
-        } catch (IOException ignored) {
-        }
-    }
-
     private static void consoleClear() {
         try {
             new ProcessBuilder("clear").inheritIO().start().waitFor();
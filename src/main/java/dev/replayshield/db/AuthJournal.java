@@ -0,0 +1,245 @@
+package dev.replayshield.db;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.replayshield.security.EncryptDecrypt;
+import dev.replayshield.util.ErrorReporter;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 인증 변경분 추가 전용(append-only) 암호화 저널.
+ * 레코드마다 개별 AES-GCM으로 봉인하고 [길이(4) | nonce + 암호문 + tag] 형태로 이어 붙인다.
+ * 시작 시 기본 스냅샷 위에 재생되고, 스냅샷 저장(compaction) 후 직전 세대가 담고 있는 레코드만 제거된다.
+ */
+public final class AuthJournal implements AutoCloseable {
+
+    // 손상된 길이 필드로 인한 과도한 할당 방지
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    private final byte[] key;
+    private final Path file;
+    // synchronized 대신 사용 - fsync 중 가상 스레드가 캐리어 스레드를 점유하지 않도록
+    private final ReentrantLock lock = new ReentrantLock();
+    private FileChannel channel;
+
+    public AuthJournal(byte[] key, Path file) {
+        this.key = key;
+        this.file = file;
+    }
+
+    public record Entry(long seq, long timestamp, String username, byte[] pwHash) {
+    }
+
+    // 레코드 1건 추가 - 레코드 크기만큼만 기록 후 fsync
+    public void append(Entry entry) {
+        appendAll(List.of(entry));
+    }
+
+    // 여러 레코드를 한 번에 기록하고 fsync는 한 번만 (묶음 커밋용)
+    public void appendAll(List<Entry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        // 암호화는 잠금 밖에서
+        List<byte[]> sealed = new ArrayList<>(entries.size());
+        int total = 0;
+        for (Entry entry : entries) {
+            byte[] frame = EncryptDecrypt.encrypt(key, encode(entry));
+            sealed.add(frame);
+            total += Integer.BYTES + frame.length;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        for (byte[] frame : sealed) {
+            buf.putInt(frame.length).put(frame);
+        }
+        buf.flip();
+
+        lock.lock();
+        try {
+            FileChannel ch = channel();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(false);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to append auth journal", exception);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 저장된 레코드 전체 읽기. 마지막 레코드가 잘려 있으면(쓰기 중 중단) 그 지점에서 잘라냄
+    public List<Entry> readAll() {
+        lock.lock();
+        try {
+            List<Entry> entries = new ArrayList<>();
+            if (!Files.exists(file)) {
+                return entries;
+            }
+            long validLength = 0;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+                while (validLength < size) {
+                    header.clear();
+                    if (!readFully(ch, header, validLength)) {
+                        break;
+                    }
+                    int length = header.flip().getInt();
+                    if (length <= 0 || length > MAX_FRAME_LENGTH || validLength + Integer.BYTES + length > size) {
+                        break;
+                    }
+                    ByteBuffer body = ByteBuffer.allocate(length);
+                    readFully(ch, body, validLength + Integer.BYTES);
+                    Entry entry;
+                    try {
+                        entry = decode(EncryptDecrypt.decrypt(key, body.array()));
+                    } catch (ReplayShieldException exception) {
+                        break;
+                    }
+                    entries.add(entry);
+                    validLength += Integer.BYTES + length;
+                }
+                if (validLength < size) {
+                    ErrorReporter.logError("AuthJournal",
+                            "Discarding " + (size - validLength) + " unreadable trailing byte(s) in " + file);
+                }
+            } catch (IOException exception) {
+                throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to read auth journal", exception);
+            }
+            if (validLength < sizeOf(file)) {
+                truncate(validLength);
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // seq 이하 레코드 제거 (직전 세대 스냅샷까지 이미 담고 있는 부분만).
+    // 남길 레코드는 임시 파일에 다시 쓰고 원자적으로 교체
+    public void discardThrough(long seq) {
+        lock.lock();
+        try {
+            List<Entry> all = readAll();
+            List<Entry> keep = new ArrayList<>(all.size());
+            for (Entry entry : all) {
+                if (entry.seq() > seq) {
+                    keep.add(entry);
+                }
+            }
+            if (keep.size() == all.size()) {
+                return;
+            }
+            if (keep.isEmpty()) {
+                truncate(0);
+                return;
+            }
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.deleteIfExists(tmp);
+                try (AuthJournal rewritten = new AuthJournal(key, tmp)) {
+                    rewritten.appendAll(keep);
+                }
+                close();
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException exception) {
+                throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to compact auth journal",
+                        exception);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException exception) {
+                    ErrorReporter.logError("AuthJournal", exception);
+                }
+                channel = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void truncate(long length) {
+        try {
+            if (!Files.exists(file)) {
+                return;
+            }
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ch.truncate(length);
+                ch.force(true);
+            }
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to truncate auth journal", exception);
+        }
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException exception) {
+            return 0;
+        }
+    }
+
+    private static boolean readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) {
+                return false;
+            }
+            pos += n;
+        }
+        return true;
+    }
+
+    private static byte[] encode(Entry entry) {
+        byte[] user = entry.username().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(Long.BYTES * 2 + Short.BYTES * 2 + user.length + entry.pwHash().length);
+        buf.putLong(entry.seq());
+        buf.putLong(entry.timestamp());
+        buf.putShort((short) user.length).put(user);
+        buf.putShort((short) entry.pwHash().length).put(entry.pwHash());
+        return buf.array();
+    }
+
+    private static Entry decode(byte[] plain) {
+        ByteBuffer buf = ByteBuffer.wrap(plain);
+        long seq = buf.getLong();
+        long timestamp = buf.getLong();
+        byte[] user = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(user);
+        byte[] hash = new byte[Short.toUnsignedInt(buf.getShort())];
+        buf.get(hash);
+        return new Entry(seq, timestamp, new String(user, StandardCharsets.UTF_8), hash);
+    }
+}
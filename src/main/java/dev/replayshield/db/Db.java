@@ -1,90 +1,320 @@
 package dev.replayshield.db;
 
-import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.sqlite.SQLiteConnection;
 
 import dev.replayshield.util.ReplayShieldException;
 import dev.replayshield.util.ReplayShieldException.ErrorType;
 
 public class Db {
 
+    // 스키마 마이그레이션 목록 - PRAGMA user_version 기준으로 순서대로 적용
+    // 새 마이그레이션은 항상 끝에 추가 (기존 항목 수정 금지)
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "base schema", Db::createBaseSchema),
+            new Migration(2, "hot-path indexes", Db::createHotPathIndexes),
+            new Migration(3, "blocked window index", Db::createBlockedWindowIndex),
+            new Migration(4, "binary password hashes", Db::convertHashesToBlob));
+
+    public static final int SCHEMA_VERSION = MIGRATIONS.size();
+
+    // SQLite 파일 헤더의 user_version 위치 (big-endian 4바이트)
+    private static final int HEADER_USER_VERSION_OFFSET = 60;
+
     public static Connection open(Path dbPath) {
         try {
             // 클래스 로드
             Class.forName("org.sqlite.JDBC");
 
-            boolean newDb = !Files.exists(dbPath) || Files.size(dbPath) == 0;
             String url = "jdbc:sqlite:" + dbPath.toAbsolutePath();
             Connection conn = DriverManager.getConnection(url);
 
-            // 파일이 없거나 빈 파일이면 새 테이블 생성
-            if (newDb) {
-                initSchema(conn);
-            } else {
-                ensureSchema(conn);
+            // 새 DB면 전체 스키마 생성, 기존 DB면 밀린 마이그레이션만 적용
+            try {
+                migrate(conn);
+            } catch (ReplayShieldException exception) {
+                conn.close();
+                throw exception;
             }
 
             return conn;
         } catch (ReplayShieldException exception) {
             throw exception;
-        } catch (IOException | ClassNotFoundException | SQLException exception) {
+        } catch (ClassNotFoundException | SQLException exception) {
             throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to open SQLite database", exception);
         }
     }
 
-    private static void ensureSchema(Connection conn) {
+    // 복호화된 평문을 :memory: DB로 바로 적재 (tmpfs 파일 없음)
+    public static Connection openInMemory(byte[] image) {
+        try {
+            Class.forName("org.sqlite.JDBC");
+
+            Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+            try {
+                if (image != null && image.length > 0) {
+                    conn.unwrap(SQLiteConnection.class).deserialize("main", image);
+                }
+                migrate(conn);
+            } catch (ReplayShieldException | SQLException exception) {
+                conn.close();
+                throw exception;
+            }
+            return conn;
+        } catch (ReplayShieldException exception) {
+            throw exception;
+        } catch (ClassNotFoundException | SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to open in-memory SQLite database",
+                    exception);
+        }
+    }
+
+    // 메모리 DB 전체를 바이트로 스냅샷 (암호화 저장용)
+    // sqlite-jdbc의 serialize/deserialize는 byte[]만 지원하므로 DB 크기만큼의 힙 배열이 한 번 생김.
+    // 암호화 쪽은 이 배열을 세그먼트 단위로 읽어 추가 사본을 만들지 않고, 호출 측이 사용 후 0으로 지움
+    public static byte[] serialize(Connection conn) {
+        try {
+            return conn.unwrap(SQLiteConnection.class).serialize("main");
+        } catch (SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to serialize SQLite database",
+                    exception);
+        }
+    }
+
+    // 복호화된 이미지가 마이그레이션 대상인지 (헤더만 확인)
+    public static boolean needsMigration(byte[] image) {
+        if (image == null || image.length < HEADER_USER_VERSION_OFFSET + Integer.BYTES) {
+            return true;
+        }
+        return ByteBuffer.wrap(image, HEADER_USER_VERSION_OFFSET, Integer.BYTES).getInt() < SCHEMA_VERSION;
+    }
+
+    // 연결이 열린 뒤 INSERT/UPDATE/DELETE로 바뀐 행 수 누계
+    public static long totalChanges(Connection conn) throws SQLException {
         try (Statement st = conn.createStatement();
-                ResultSet rs = st.executeQuery(
-                        "SELECT name FROM sqlite_master WHERE type='table' AND name='user_config'")) {
-            if (!rs.next()) {
-                initSchema(conn);
+                ResultSet rs = st.executeQuery("SELECT total_changes()")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    public static int schemaVersion(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // user_version 이후의 마이그레이션을 하나씩 트랜잭션으로 적용
+    private static void migrate(Connection conn) {
+        try {
+            int current = schemaVersion(conn);
+            if (current > SCHEMA_VERSION) {
+                throw new ReplayShieldException(ErrorType.DATABASE_ACCESS,
+                        "Database schema version " + current + " is newer than supported version "
+                                + SCHEMA_VERSION);
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) {
+                    continue;
+                }
+                boolean originalAutoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (Statement st = conn.createStatement()) {
+                    migration.step().apply(st);
+                    // PRAGMA는 바인딩 불가 - 정수 상수만 사용
+                    st.execute("PRAGMA user_version = " + migration.version());
+                    conn.commit();
+                } catch (SQLException exception) {
+                    conn.rollback();
+                    throw new ReplayShieldException(ErrorType.DATABASE_ACCESS,
+                            "Failed to apply schema migration " + migration.version() + " ("
+                                    + migration.description() + ")",
+                            exception);
+                } finally {
+                    conn.setAutoCommit(originalAutoCommit);
+                }
             }
         } catch (SQLException exception) {
             throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to validate database schema", exception);
         }
     }
 
-    private static void initSchema(Connection conn) {
-        try (Statement st = conn.createStatement()) {
-            st.execute("""
-                        CREATE TABLE IF NOT EXISTS user_config (
-                            username TEXT PRIMARY KEY,
-                            block_count INTEGER NOT NULL
-                        )
-                    """);
-
-            st.execute("""
-                        CREATE TABLE IF NOT EXISTS password_pool (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            username TEXT NOT NULL,
-                            pw_hash TEXT NOT NULL,
-                            pw_hint TEXT NOT NULL,
-                            hit_count INTEGER NOT NULL DEFAULT 0,
-                            blocked INTEGER NOT NULL DEFAULT 0,
-                            last_use INTEGER NOT NULL DEFAULT 0,
-                            FOREIGN KEY(username) REFERENCES user_config(username)
-                        )
-                    """);
-
-            st.execute("""
-                        CREATE TABLE IF NOT EXISTS password_history (
-                            id INTEGER PRIMARY KEY AUTOINCREMENT,
-                            username TEXT NOT NULL,
-                            pw_hash TEXT NOT NULL,
-                            pw_hint TEXT NOT NULL,
-                            created_at INTEGER NOT NULL,
-                            FOREIGN KEY(username) REFERENCES user_config(username)
-                        )
-                    """);
-        } catch (SQLException exception) {
-            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to initialize database schema",
-                    exception);
+    // v1: 버전 관리 이전 DB와 동일한 테이블 (IF NOT EXISTS라 기존 DB에도 안전)
+    private static void createBaseSchema(Statement st) throws SQLException {
+        st.execute("""
+                    CREATE TABLE IF NOT EXISTS user_config (
+                        username TEXT PRIMARY KEY,
+                        block_count INTEGER NOT NULL
+                    )
+                """);
+
+        st.execute("""
+                    CREATE TABLE IF NOT EXISTS password_pool (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT NOT NULL,
+                        pw_hash TEXT NOT NULL,
+                        pw_hint TEXT NOT NULL,
+                        hit_count INTEGER NOT NULL DEFAULT 0,
+                        blocked INTEGER NOT NULL DEFAULT 0,
+                        last_use INTEGER NOT NULL DEFAULT 0,
+                        FOREIGN KEY(username) REFERENCES user_config(username)
+                    )
+                """);
+
+        st.execute("""
+                    CREATE TABLE IF NOT EXISTS password_history (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT NOT NULL,
+                        pw_hash TEXT NOT NULL,
+                        pw_hint TEXT NOT NULL,
+                        created_at INTEGER NOT NULL,
+                        FOREIGN KEY(username) REFERENCES user_config(username)
+                    )
+                """);
+
+        st.execute("""
+                    CREATE TABLE IF NOT EXISTS replayshield_meta (
+                        name TEXT PRIMARY KEY,
+                        value INTEGER NOT NULL
+                    )
+                """);
+    }
+
+    // v2: 인증 경로 조회/정렬용 인덱스
+    private static void createHotPathIndexes(Statement st) throws SQLException {
+        // WHERE username=? AND pw_hash=?
+        st.execute("""
+                    CREATE INDEX IF NOT EXISTS idx_pool_user_hash
+                    ON password_pool(username, pw_hash)
+                """);
+        // WHERE username=? ORDER BY last_use DESC LIMIT ?
+        st.execute("""
+                    CREATE INDEX IF NOT EXISTS idx_pool_user_last_use
+                    ON password_pool(username, last_use)
+                """);
+        st.execute("""
+                    CREATE INDEX IF NOT EXISTS idx_history_user_created
+                    ON password_history(username, created_at)
+                """);
+    }
+
+    // 내부 메타 값 조회 (없으면 기본값)
+    public static long readMeta(Connection conn, String name, long defaultValue) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT value FROM replayshield_meta WHERE name=?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : defaultValue;
+            }
+        }
+    }
+
+    public static void writeMeta(Connection conn, String name, long value) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("""
+                INSERT INTO replayshield_meta(name, value) VALUES(?, ?)
+                ON CONFLICT(name) DO UPDATE SET value=excluded.value
+                """)) {
+            ps.setString(1, name);
+            ps.setLong(2, value);
+            ps.executeUpdate();
+        }
+    }
+
+    // v3: blocked window 경계(가장 오래된 blocked 행) 조회용 인덱스
+    private static void createBlockedWindowIndex(Statement st) throws SQLException {
+        st.execute("""
+                    CREATE INDEX IF NOT EXISTS idx_pool_user_blocked_last_use
+                    ON password_pool(username, blocked, last_use)
+                """);
+    }
+
+    // v4: pw_hash를 Base64 TEXT에서 32바이트 BLOB으로 변환.
+    // SQLite는 컬럼 타입 변경이 안 되므로 새 테이블로 복사 후 교체 (인덱스도 다시 생성)
+    private static void convertHashesToBlob(Statement st) throws SQLException {
+        st.execute("""
+                    CREATE TABLE password_pool_v4 (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT NOT NULL,
+                        pw_hash BLOB NOT NULL,
+                        pw_hint TEXT NOT NULL,
+                        hit_count INTEGER NOT NULL DEFAULT 0,
+                        blocked INTEGER NOT NULL DEFAULT 0,
+                        last_use INTEGER NOT NULL DEFAULT 0,
+                        FOREIGN KEY(username) REFERENCES user_config(username)
+                    )
+                """);
+        st.execute("""
+                    INSERT INTO password_pool_v4(id, username, pw_hash, pw_hint, hit_count, blocked, last_use)
+                    SELECT id, username, pw_hash, pw_hint, hit_count, blocked, last_use FROM password_pool
+                """);
+        decodeBase64Hashes(st.getConnection(), "password_pool_v4");
+        st.execute("DROP TABLE password_pool");
+        st.execute("ALTER TABLE password_pool_v4 RENAME TO password_pool");
+
+        st.execute("""
+                    CREATE TABLE password_history_v4 (
+                        id INTEGER PRIMARY KEY AUTOINCREMENT,
+                        username TEXT NOT NULL,
+                        pw_hash BLOB NOT NULL,
+                        pw_hint TEXT NOT NULL,
+                        created_at INTEGER NOT NULL,
+                        FOREIGN KEY(username) REFERENCES user_config(username)
+                    )
+                """);
+        st.execute("""
+                    INSERT INTO password_history_v4(id, username, pw_hash, pw_hint, created_at)
+                    SELECT id, username, pw_hash, pw_hint, created_at FROM password_history
+                """);
+        decodeBase64Hashes(st.getConnection(), "password_history_v4");
+        st.execute("DROP TABLE password_history");
+        st.execute("ALTER TABLE password_history_v4 RENAME TO password_history");
+
+        createHotPathIndexes(st);
+        createBlockedWindowIndex(st);
+    }
+
+    // table은 위의 상수 이름만 전달됨
+    private static void decodeBase64Hashes(Connection conn, String table) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        List<byte[]> hashes = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery(
+                        "SELECT id, pw_hash FROM " + table + " WHERE typeof(pw_hash)='text'")) {
+            while (rs.next()) {
+                long id = rs.getLong(1);
+                try {
+                    hashes.add(Base64.getDecoder().decode(rs.getString(2)));
+                } catch (IllegalArgumentException exception) {
+                    throw new SQLException("Invalid password hash in " + table + " (id=" + id + ")", exception);
+                }
+                ids.add(id);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE " + table + " SET pw_hash=? WHERE id=?")) {
+            for (int i = 0; i < ids.size(); i++) {
+                ps.setBytes(1, hashes.get(i));
+                ps.setLong(2, ids.get(i));
+                ps.addBatch();
+            }
+            ps.executeBatch();
         }
     }
+
+    private record Migration(int version, String description, MigrationStep step) {
+    }
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Statement st) throws SQLException;
+    }
 }
@@ -0,0 +1,511 @@
+package dev.replayshield.db;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import dev.replayshield.security.EncryptDecrypt;
+import dev.replayshield.security.SegmentedCipherFile;
+import dev.replayshield.util.ErrorReporter;
+import dev.replayshield.util.PathResolver;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * serve 모드 전용 상주 DB.
+ * 시작 시 한 번만 복호화해 :memory: SQLite로 적재하고 연결을 프로세스 수명 동안 유지하며,
+ * 인증 변경분은 {@link AuthJournal}에 레코드 단위로 추가되고,
+ * 전체 암호화 스냅샷(compaction)은 {@link SnapshotFlusher}가 모아서 저장한다.
+ * 인증 작업은 사용자별 잠금으로 직렬화되고 다른 사용자끼리는 병렬로 실행되며,
+ * 스냅샷/재적재처럼 DB 전체를 다루는 작업만 배타적으로 실행된다.
+ */
+public final class ResidentDb implements AutoCloseable {
+
+    // 스냅샷에 반영된 마지막 저널 번호
+    private static final String META_JOURNAL_SEQ = "journal_seq";
+    private static final int USER_LOCK_STRIPES = 64;
+
+    private final byte[] key;
+    private final Path encFile;
+    private final AuthJournal journal;
+    private final JournalReplayer replayer;
+    // 읽기 잠금: 사용자 단위 작업(공유), 쓰기 잠금: 스냅샷/재적재/관리 작업(배타)
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final StripedLocks userLocks = new StripedLocks(USER_LOCK_STRIPES);
+    private final AtomicLong mutations = new AtomicLong();
+    private volatile Connection connection;
+    private volatile SnapshotFlusher flusher;
+    private final List<Mirror> mirrors = new CopyOnWriteArrayList<>();
+    private volatile long persistedMutations;
+    private volatile boolean closed;
+    private SegmentedCipherFile cipherFile;
+    // journalLock으로 보호 (번호 발급과 추가 순서를 일치시킴)
+    private final ReentrantLock journalLock = new ReentrantLock();
+    private final Condition journalSynced = journalLock.newCondition();
+    private long journalSeq;
+    // 다음 fsync에 묶일 레코드, 앞 묶음을 쓰는 중인지 (journalLock으로 보호)
+    private JournalGroup openGroup = new JournalGroup();
+    private boolean journalWriting;
+    // 디스크의 최신 스냅샷 세대가 담고 있는 마지막 저널 번호 (snapshotLock 쓰기 잠금으로 보호)
+    private long snapshotJournalSeq;
+    private FileTime knownModified;
+    private long knownSize = -1;
+
+    private ResidentDb(byte[] key, Path encFile, Path journalFile, JournalReplayer replayer) {
+        this.key = key;
+        this.encFile = encFile;
+        this.journal = new AuthJournal(key, journalFile);
+        this.replayer = replayer;
+    }
+
+    public static ResidentDb open(byte[] key, JournalReplayer replayer) {
+        return open(key, PathResolver.getEncryptedDbFile().toPath(), PathResolver.getJournalFile().toPath(),
+                replayer);
+    }
+
+    public static ResidentDb open(byte[] key, Path encFile, Path journalFile, JournalReplayer replayer) {
+        if (!Files.exists(encFile)) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Encrypted DB not found. Run init first.");
+        }
+
+        ResidentDb db = new ResidentDb(key, encFile, journalFile, replayer);
+        try {
+            db.load();
+            return db;
+        } catch (ReplayShieldException exception) {
+            db.journal.close();
+            throw exception;
+        }
+    }
+
+    // 쓰기 지연 저장 시작 - 변경을 모아서 한 번에 암호화
+    public void startFlusher(long maxDelayMillis, int maxDirtyMutations) {
+        snapshotLock.writeLock().lock();
+        try {
+            if (flusher != null || closed) {
+                return;
+            }
+            flusher = new SnapshotFlusher(this::persist, maxDelayMillis, maxDirtyMutations);
+            if (isDirty()) {
+                // 시작 시 재생된 저널을 스냅샷에 반영
+                flusher.markDirty();
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // 메모리 사본 연결 - 즉시 현재 DB 기준으로 재구성
+    public void attachMirror(Mirror newMirror) throws SQLException {
+        snapshotLock.writeLock().lock();
+        try {
+            ensureOpen();
+            reloadIfChangedExternally();
+            newMirror.rebuild(connection);
+            mirrors.add(newMirror);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // 외부 프로세스가 DB를 바꿨으면 다시 적재 (메모리 사본도 함께 재구성)
+    public void syncWithDisk() {
+        acquireShared();
+        snapshotLock.readLock().unlock();
+    }
+
+    // 상주 연결에서 DB 전체 작업 실행 (배타)
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        snapshotLock.writeLock().lock();
+        try {
+            ensureOpen();
+            reloadIfChangedExternally();
+            flushMirror();
+            return work.apply(connection);
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // 한 사용자의 행만 다루는 작업 실행 - 같은 사용자끼리만 직렬화
+    public <T> T execute(String username, SqlWork<T> work) throws SQLException {
+        acquireShared();
+        try {
+            ReentrantLock userLock = userLocks.forKey(username);
+            userLock.lock();
+            try {
+                return work.apply(connection);
+            } finally {
+                userLock.unlock();
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // 인증 변경 1건을 저널에 추가 (execute 안에서 적용 직후 호출)
+    public void recordMutation(String username, byte[] pwHash, long timestamp) {
+        recordMutations(List.of(new Mutation(username, pwHash, timestamp)));
+    }
+
+    /*
+     * 커밋된 변경 여러 건을 저널에 추가하고 fsync될 때까지 대기.
+     * 다른 사용자 스레드가 fsync를 기다리는 동안 들어온 레코드는 다음 묶음에 모였다가
+     * 앞 fsync가 끝나면 그중 한 스레드가 한 번에 기록한다 (group commit).
+     */
+    public void recordMutations(List<Mutation> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        snapshotLock.readLock().lock();
+        try {
+            ensureOpen();
+            JournalGroup group;
+            journalLock.lock();
+            try {
+                group = openGroup;
+                long seq = journalSeq;
+                for (Mutation mutation : batch) {
+                    group.entries.add(new AuthJournal.Entry(++seq, mutation.timestamp(), mutation.username(),
+                            mutation.pwHash()));
+                }
+                journalSeq = seq;
+                while (!group.done) {
+                    if (journalWriting) {
+                        journalSynced.awaitUninterruptibly();
+                    } else {
+                        // 쓰는 스레드가 없는데 끝나지 않았으면 아직 열린 묶음 - 이 스레드가 기록
+                        writeJournalGroup(group);
+                    }
+                }
+            } finally {
+                journalLock.unlock();
+            }
+            if (group.failure != null) {
+                throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to append auth journal",
+                        group.failure);
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        mutations.addAndGet(batch.size());
+        SnapshotFlusher current = flusher;
+        if (current != null) {
+            current.markDirty(batch.size());
+        }
+    }
+
+    // journalLock을 쥔 채 호출 - fsync 동안에는 잠금을 풀어 다른 스레드가 다음 묶음에 레코드를 쌓게 함
+    private void writeJournalGroup(JournalGroup group) {
+        openGroup = new JournalGroup();
+        journalWriting = true;
+        journalLock.unlock();
+        try {
+            journal.appendAll(group.entries);
+        } catch (RuntimeException exception) {
+            group.failure = exception;
+        } finally {
+            journalLock.lock();
+            journalWriting = false;
+            group.done = true;
+            journalSynced.signalAll();
+        }
+    }
+
+    // 실행 중 저장 주기 교체 (저장기가 아직 없으면 무시 - startFlusher 인자가 적용됨)
+    public void reconfigureFlusher(long maxDelayMillis, int maxDirtyMutations) {
+        SnapshotFlusher current = flusher;
+        if (current != null) {
+            current.reconfigure(maxDelayMillis, maxDirtyMutations);
+        }
+    }
+
+    // 변경 발생 기록 - 다음 스냅샷에서 저장
+    public void markDirty() {
+        mutations.incrementAndGet();
+        SnapshotFlusher current = flusher;
+        if (current != null) {
+            current.markDirty();
+        }
+    }
+
+    public boolean isDirty() {
+        return mutations.get() != persistedMutations;
+    }
+
+    // 변경분이 있으면 암호화 스냅샷 저장 후 직전 세대에 반영된 저널 제거 (compaction)
+    public void persist() {
+        snapshotLock.writeLock().lock();
+        try {
+            if (closed || !isDirty()) {
+                return;
+            }
+            // 외부 변경 확인 → 저장 → 저널 정리를 manage CLI 저장과 배타적으로 (프로세스 간 잠금)
+            try (SegmentedCipherFile.WriteLock lock = SegmentedCipherFile.lockForWrite(encFile)) {
+                reloadIfChangedExternally();
+                // 쓰기 잠금 중에는 새 변경이 없으므로 여기까지가 이번 스냅샷 범위
+                long snapshotMutations = mutations.get();
+                try {
+                    // 저널에는 있지만 아직 SQL에 반영되지 않은 변경을 먼저 반영
+                    flushMirror();
+                    Db.writeMeta(connection, META_JOURNAL_SEQ, journalSeq);
+                } catch (SQLException exception) {
+                    throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to prepare snapshot",
+                            exception);
+                }
+                // 메모리 DB 스냅샷 중 바뀐 세그먼트만 다시 봉인
+                byte[] image = Db.serialize(connection);
+                try {
+                    cipherFile.write(image);
+                } finally {
+                    SecureDbSession.wipe(image);
+                }
+                rememberFingerprint();
+                // 직전 세대(.prev)가 담고 있는 레코드만 제거. 최신 세대가 손상돼 .prev로 시작해도
+                // 그 이후 변경은 저널에서 다시 재생되므로 이미 쓴 암호가 다시 통과하지 않음
+                journal.discardThrough(snapshotJournalSeq);
+                snapshotJournalSeq = journalSeq;
+                persistedMutations = snapshotMutations;
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        SnapshotFlusher current;
+        snapshotLock.writeLock().lock();
+        try {
+            current = flusher;
+            flusher = null;
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+        if (current != null) {
+            // 대기 중인 변경 강제 저장 후 저장 스레드 종료
+            current.close();
+        }
+
+        snapshotLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            ReplayShieldException pending = null;
+            try {
+                persist();
+            } catch (ReplayShieldException exception) {
+                pending = exception;
+            }
+            closed = true;
+            try {
+                connection.close();
+            } catch (SQLException exception) {
+                ReplayShieldException next = new ReplayShieldException(
+                        ErrorType.DATABASE_ACCESS,
+                        "Failed to close SQLite connection",
+                        exception);
+                if (pending == null) {
+                    pending = next;
+                } else {
+                    pending.addSuppressed(next);
+                }
+            }
+            journal.close();
+            if (pending != null) {
+                throw pending;
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    // 공유 잠금 획득. 외부 변경이 감지되면 배타 잠금으로 재적재 후 공유 잠금으로 내려옴
+    private void acquireShared() {
+        snapshotLock.readLock().lock();
+        try {
+            ensureOpen();
+            if (!changedExternally()) {
+                return;
+            }
+        } catch (RuntimeException exception) {
+            snapshotLock.readLock().unlock();
+            throw exception;
+        }
+        snapshotLock.readLock().unlock();
+
+        snapshotLock.writeLock().lock();
+        try {
+            ensureOpen();
+            reloadIfChangedExternally();
+            // 쓰기 잠금을 가진 채 읽기 잠금을 얻어 다운그레이드
+            snapshotLock.readLock().lock();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    private void load() {
+        // 읽기 전에 기록 - 읽는 사이 교체되면 다음 확인에서 다시 적재
+        rememberFingerprint();
+        byte[] image;
+        if (SegmentedCipherFile.hasSnapshot(encFile)) {
+            SegmentedCipherFile.Loaded loaded = SegmentedCipherFile.load(key, encFile);
+            cipherFile = loaded.file();
+            image = loaded.plain();
+        } else {
+            // 기존 단일 GCM 포맷 - 첫 스냅샷에서 세그먼트 포맷으로 전환
+            image = EncryptDecrypt.decryptToBytes(key, encFile);
+            cipherFile = SegmentedCipherFile.create(key, encFile);
+        }
+        boolean migrating = Db.needsMigration(image);
+        try {
+            connection = Db.openInMemory(image);
+        } finally {
+            SecureDbSession.wipe(image);
+        }
+        if (migrating) {
+            // 스키마 마이그레이션 결과도 다음 스냅샷에 저장
+            markDirty();
+        }
+        replayJournal();
+    }
+
+    // 스냅샷 이후에 추가된 저널 레코드를 순서대로 재적용
+    private void replayJournal() {
+        List<AuthJournal.Entry> entries = journal.readAll();
+        try {
+            long baseSeq = Db.readMeta(connection, META_JOURNAL_SEQ, 0);
+            journalSeq = baseSeq;
+            snapshotJournalSeq = baseSeq;
+            boolean originalAutoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            int replayed = 0;
+            try {
+                for (AuthJournal.Entry entry : entries) {
+                    if (entry.seq() <= baseSeq) {
+                        continue;
+                    }
+                    replayer.replay(connection, entry);
+                    journalSeq = Math.max(journalSeq, entry.seq());
+                    replayed++;
+                }
+                connection.commit();
+            } catch (SQLException exception) {
+                connection.rollback();
+                throw exception;
+            } finally {
+                connection.setAutoCommit(originalAutoCommit);
+            }
+            if (replayed > 0) {
+                // 재생된 변경은 아직 스냅샷에 없음
+                mutations.addAndGet(replayed);
+                SnapshotFlusher current = flusher;
+                if (current != null) {
+                    current.markDirty();
+                }
+            }
+        } catch (SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to replay auth journal", exception);
+        }
+    }
+
+    // manage CLI 등 외부 프로세스가 암호화 DB를 갱신했으면 다시 읽고 저널을 재적용
+    private void reloadIfChangedExternally() {
+        if (!changedExternally()) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException exception) {
+            ErrorReporter.logError("ResidentDb", exception);
+        }
+        // 저장되지 않은 변경은 저널 재생으로 복원됨
+        persistedMutations = mutations.get();
+        load();
+        try {
+            for (Mirror mirror : mirrors) {
+                mirror.rebuild(connection);
+            }
+        } catch (SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to rebuild in-memory auth state",
+                    exception);
+        }
+    }
+
+    private void flushMirror() throws SQLException {
+        for (Mirror mirror : mirrors) {
+            mirror.flushPending(connection);
+        }
+    }
+
+    private boolean changedExternally() {
+        try {
+            return knownModified == null
+                    || !knownModified.equals(Files.getLastModifiedTime(encFile))
+                    || knownSize != Files.size(encFile);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to stat encrypted DB", exception);
+        }
+    }
+
+    private void rememberFingerprint() {
+        try {
+            knownModified = Files.getLastModifiedTime(encFile);
+            knownSize = Files.size(encFile);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to stat encrypted DB", exception);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Resident DB already closed.");
+        }
+    }
+
+    // 한 번의 fsync로 기록되는 저널 레코드 묶음 (journalLock으로 보호)
+    private static final class JournalGroup {
+        private final List<AuthJournal.Entry> entries = new ArrayList<>();
+        private boolean done;
+        private RuntimeException failure;
+    }
+
+    // 저널에 기록할 인증 변경 1건
+    public record Mutation(String username, byte[] pwHash, long timestamp) {
+    }
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    /**
+     * 상주 DB 위에 판정용 상태를 따로 들고 있는 엔진의 연결 지점.
+     * 두 메서드 모두 배타 잠금을 가진 상태에서 호출된다.
+     */
+    public interface Mirror {
+        // 저널에 기록됐지만 아직 SQL에 반영되지 않은 변경 반영 (스냅샷/전체 작업 직전)
+        void flushPending(Connection conn) throws SQLException;
+
+        // 적재/재적재 직후 - 대기 변경은 저널 재생으로 이미 복원됐으므로 버리고 다시 구성
+        void rebuild(Connection conn) throws SQLException;
+    }
+
+    @FunctionalInterface
+    public interface JournalReplayer {
+        void replay(Connection conn, AuthJournal.Entry entry) throws SQLException;
+    }
+}
@@ -1,13 +1,13 @@
 package dev.replayshield.db;
 
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
 
-import dev.replayshield.Main;
 import dev.replayshield.security.EncryptDecrypt;
+import dev.replayshield.security.SegmentedCipherFile;
 import dev.replayshield.util.PathResolver;
 import dev.replayshield.util.ReplayShieldException;
 import dev.replayshield.util.ReplayShieldException.ErrorType;
@@ -23,54 +23,81 @@ public final class SecureDbSession {
             throw new ReplayShieldException(ErrorType.INITIALIZATION, "Encrypted DB not found. Run init first.");
         }
 
-        Path tmp = PathResolver.createMemoryDbTempFile();
+        byte[] image = null;
         try {
-            EncryptDecrypt.decryptFile(key, encFile, tmp);
-            Connection conn = Db.open(tmp);
-            return new DbSession(key, encFile, tmp, conn, false);
+            // 복호화 결과를 파일 없이 :memory: DB로 적재
+            image = EncryptDecrypt.decryptToBytes(key, encFile);
+            Connection conn = Db.openInMemory(image);
+            return new DbSession(key, encFile, conn, false, false, 0);
         } catch (ReplayShieldException exception) {
-            Main.deleteQuietly(tmp);
             throw exception;
         } catch (Exception exception) {
-            Main.deleteQuietly(tmp);
             throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to open read-only DB session",
                     exception);
+        } finally {
+            wipe(image);
         }
     }
 
     public static DbSession openWritable(byte[] key) {
         Path encFile = PathResolver.getEncryptedDbFile().toPath();
-        Path tmp = PathResolver.createMemoryDbTempFile();
-
+        byte[] image = null;
         try {
+            // 복호화 전에 확인 - 그 사이 교체되면 저장 시 충돌로 판단 (안전한 쪽)
+            int generation = SegmentedCipherFile.currentGeneration(encFile);
             if (Files.exists(encFile)) {
-                EncryptDecrypt.decryptFile(key, encFile, tmp);
+                image = EncryptDecrypt.decryptToBytes(key, encFile);
             }
-            Connection conn = Db.open(tmp);
-            return new DbSession(key, encFile, tmp, conn, true);
+            // 새 DB이거나 마이그레이션이 적용되면 변경이 없어도 저장 필요
+            boolean migrated = Db.needsMigration(image);
+            Connection conn = Db.openInMemory(image);
+            return new DbSession(key, encFile, conn, true, migrated, generation);
         } catch (ReplayShieldException exception) {
-            Main.deleteQuietly(tmp);
             throw exception;
         } catch (Exception exception) {
-            Main.deleteQuietly(tmp);
             throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to open writable DB session", exception);
+        } finally {
+            wipe(image);
+        }
+    }
+
+    static void wipe(byte[] image) {
+        if (image != null) {
+            Arrays.fill(image, (byte) 0);
         }
     }
 
     public static final class DbSession implements AutoCloseable {
         private final byte[] key;
         private final Path encFile;
-        private final Path tmpFile;
         private final Connection connection;
         private final boolean writable;
+        private final boolean migrated;
+        // 세션을 연 시점의 디스크 세대 - 저장 직전에 달라졌으면 다른 프로세스(serve 스냅샷)가 먼저 저장한 것
+        private final int loadedGeneration;
+        // 세션 시작 시점의 total_changes() - 이후 증가했을 때만 재암호화
+        private final long baselineChanges;
         private boolean closed;
 
-        private DbSession(byte[] key, Path encFile, Path tmpFile, Connection connection, boolean writable) {
+        private DbSession(byte[] key, Path encFile, Connection connection, boolean writable, boolean migrated,
+                int loadedGeneration) throws SQLException {
             this.key = key;
             this.encFile = encFile;
-            this.tmpFile = tmpFile;
             this.connection = connection;
             this.writable = writable;
+            this.migrated = migrated;
+            this.loadedGeneration = loadedGeneration;
+            // 생성 실패 시 호출자는 세션을 받지 못하므로 여기서 연결을 닫음
+            try {
+                this.baselineChanges = writable ? Db.totalChanges(connection) : 0;
+            } catch (SQLException | RuntimeException exception) {
+                try {
+                    connection.close();
+                } catch (SQLException closeException) {
+                    exception.addSuppressed(closeException);
+                }
+                throw exception;
+            }
         }
 
         public Connection connection() {
@@ -80,6 +107,11 @@ public final class SecureDbSession {
             return connection;
         }
 
+        // 이 세션에서 INSERT/UPDATE/DELETE가 실행됐는지 (롤백된 변경도 포함 - 보수적으로 저장)
+        public boolean hasChanges() throws SQLException {
+            return migrated || Db.totalChanges(connection) != baselineChanges;
+        }
+
         // AutoCloseable에 의해 try ()문 종료시 해당 메서드 호출됨
         @Override
         public void close() {
@@ -88,36 +120,34 @@ public final class SecureDbSession {
             }
             closed = true;
             ReplayShieldException pending = null;
-            try {
-                connection.close();
-            } catch (SQLException exception) {
-                pending = new ReplayShieldException(
-                        ErrorType.DATABASE_ACCESS,
-                        "Failed to close SQLite connection",
-                        exception);
-            }
 
+            // 연결을 닫기 전에 메모리 DB를 바이트로 꺼내서 암호화 (변경 없는 세션은 생략)
             if (writable) {
+                byte[] image = null;
                 try {
-                    EncryptDecrypt.encryptFile(key, tmpFile, encFile);
+                    if (hasChanges()) {
+                        image = Db.serialize(connection);
+                        persist(image);
+                    }
                 } catch (ReplayShieldException exception) {
-                    pending = append(pending, exception);
+                    pending = exception;
                 } catch (Exception exception) {
-                    pending = append(pending,
-                            new ReplayShieldException(
-                                    ErrorType.DATABASE_ACCESS,
-                                    "Failed to persist encrypted DB",
-                                    exception));
+                    pending = new ReplayShieldException(
+                            ErrorType.DATABASE_ACCESS,
+                            "Failed to persist encrypted DB",
+                            exception);
+                } finally {
+                    wipe(image);
                 }
             }
 
             try {
-                Files.deleteIfExists(tmpFile);
-            } catch (IOException exception) {
+                connection.close();
+            } catch (SQLException exception) {
                 pending = append(pending,
                         new ReplayShieldException(
-                                ErrorType.SYSTEM_ENVIRONMENT,
-                                "Failed to delete temporary database file",
+                                ErrorType.DATABASE_ACCESS,
+                                "Failed to close SQLite connection",
                                 exception));
             }
 
@@ -126,6 +156,18 @@ public final class SecureDbSession {
             }
         }
 
+        // 세대 확인부터 교체까지 저장 잠금 아래에서. 그 사이 serve가 스냅샷을 저장했으면
+        // 이 세션의 이미지(이전 journal_seq 포함)로 덮으면 저널 레코드가 사라지므로 저장하지 않음
+        private void persist(byte[] image) {
+            try (SegmentedCipherFile.WriteLock lock = SegmentedCipherFile.lockForWrite(encFile)) {
+                if (SegmentedCipherFile.currentGeneration(encFile) != loadedGeneration) {
+                    throw new ReplayShieldException(ErrorType.DATABASE_ACCESS,
+                            "Encrypted DB was changed by another process while this session was open; retry.");
+                }
+                EncryptDecrypt.encryptBytes(key, image, encFile);
+            }
+        }
+
         private static ReplayShieldException append(ReplayShieldException existing, ReplayShieldException next) {
             if (existing == null) {
                 return next;
@@ -0,0 +1,149 @@
+package dev.replayshield.db;
+
+import java.util.concurrent.TimeUnit;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * 쓰기 지연(write-behind) 스냅샷 저장기.
+ * 변경이 생기면 dirty로 표시만 하고, 최대 지연 시간이 지나거나
+ * dirty 변경 수가 한도에 도달하면 한 번의 암호화 저장으로 묶어서 처리한다.
+ */
+public final class SnapshotFlusher implements AutoCloseable {
+
+    private final Runnable flushAction;
+    private final Object monitor = new Object();
+    private final Thread worker;
+    // monitor로 보호 - reconfigure로 교체 가능
+    private long maxDelayNanos;
+    private int maxDirtyMutations;
+    private int dirty;
+    private long firstDirtyAt;
+    private boolean stopped;
+    private long flushCount;
+
+    public SnapshotFlusher(Runnable flushAction, long maxDelayMillis, int maxDirtyMutations) {
+        checkLimits(maxDelayMillis, maxDirtyMutations);
+        this.flushAction = flushAction;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.maxDirtyMutations = maxDirtyMutations;
+        this.worker = new Thread(this::runLoop, "replayshield-flusher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    // 변경 1건 기록 - 요청 스레드는 여기서 바로 반환
+    public void markDirty() {
+        markDirty(1);
+    }
+
+    public void markDirty(int count) {
+        synchronized (monitor) {
+            boolean wasClean = dirty == 0;
+            if (wasClean) {
+                firstDirtyAt = System.nanoTime();
+            }
+            dirty += count;
+            // 첫 변경이면 무기한 대기 중인 작업 스레드가 지연 시간 타이머를 시작하도록 깨움
+            if (wasClean || dirty >= maxDirtyMutations) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    // 실행 중 한도 교체 - 대기 중인 작업 스레드가 새 기준으로 다시 판단
+    public void reconfigure(long maxDelayMillis, int maxDirtyMutations) {
+        checkLimits(maxDelayMillis, maxDirtyMutations);
+        synchronized (monitor) {
+            this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+            this.maxDirtyMutations = maxDirtyMutations;
+            monitor.notifyAll();
+        }
+    }
+
+    // 대기 중인 변경을 즉시 저장 (종료 시 사용)
+    public void flushNow() {
+        synchronized (monitor) {
+            dirty = 0;
+        }
+        runFlush();
+    }
+
+    public long flushCount() {
+        synchronized (monitor) {
+            return flushCount;
+        }
+    }
+
+    @Override
+    public void close() {
+        long joinMillis;
+        synchronized (monitor) {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            joinMillis = TimeUnit.NANOSECONDS.toMillis(maxDelayNanos) + 1_000;
+            monitor.notifyAll();
+        }
+        try {
+            worker.join(joinMillis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        // 종료 시 강제 저장
+        flushNow();
+    }
+
+    private void runLoop() {
+        while (true) {
+            synchronized (monitor) {
+                try {
+                    while (!stopped && !due()) {
+                        if (dirty == 0) {
+                            monitor.wait();
+                        } else {
+                            long remaining = maxDelayNanos - (System.nanoTime() - firstDirtyAt);
+                            TimeUnit.NANOSECONDS.timedWait(monitor, Math.max(remaining, 1));
+                        }
+                    }
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (stopped) {
+                    return;
+                }
+                dirty = 0;
+            }
+            if (!runFlush()) {
+                // 실패하면 다음 지연 주기에 재시도
+                markDirty();
+            }
+        }
+    }
+
+    private static void checkLimits(long maxDelayMillis, int maxDirtyMutations) {
+        if (maxDelayMillis <= 0 || maxDirtyMutations <= 0) {
+            throw new IllegalArgumentException("Flush limits must be positive");
+        }
+    }
+
+    private boolean due() {
+        return dirty > 0
+                && (dirty >= maxDirtyMutations || System.nanoTime() - firstDirtyAt >= maxDelayNanos);
+    }
+
+    private boolean runFlush() {
+        try {
+            flushAction.run();
+            synchronized (monitor) {
+                flushCount++;
+            }
+            return true;
+        } catch (RuntimeException exception) {
+            ErrorReporter.logError("Snapshot", exception);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package dev.replayshield.db;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 사용자 이름 해시로 나눈 고정 개수의 잠금.
+ * 같은 사용자의 요청은 항상 같은 잠금을 쓰므로 직렬화되고,
+ * 다른 사용자는 (해시 충돌이 아니면) 서로 기다리지 않는다.
+ */
+final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    StripedLocks(int stripeCount) {
+        // 2의 거듭제곱으로 올림 - 인덱스를 mask로 계산
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    ReentrantLock forKey(String key) {
+        int h = key.hashCode();
+        // 하위 비트만 쓰므로 상위 비트를 섞어줌
+        h ^= (h >>> 16);
+        return stripes[h & mask];
+    }
+}
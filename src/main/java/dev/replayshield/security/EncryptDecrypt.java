@@ -2,12 +2,12 @@
 package dev.replayshield.security;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Arrays;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
@@ -18,8 +18,8 @@ import dev.replayshield.util.ReplayShieldException.ErrorType;
 
 public class EncryptDecrypt {
 
-    private static final int GCM_NONCE_LENGTH = 12;
-    private static final int GCM_TAG_LENGTH = 16;
+    static final int GCM_NONCE_LENGTH = 12;
+    static final int GCM_TAG_LENGTH = 16;
     private static final SecureRandom rnd;
 
     static {
@@ -33,20 +33,19 @@ public class EncryptDecrypt {
     }
 
     public static byte[] encrypt(byte[] key, byte[] plain) {
-        try {
-            byte[] iv = new byte[GCM_NONCE_LENGTH];
-            rnd.nextBytes(iv);
-
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            SecretKeySpec ks = new SecretKeySpec(key, "AES");
-            cipher.init(Cipher.ENCRYPT_MODE, ks, spec);
+        return encrypt(key, plain, null);
+    }
 
-            byte[] cipherText = cipher.doFinal(plain);
+    // aad: 함께 인증할 추가 데이터 (암호화되지 않음)
+    public static byte[] encrypt(byte[] key, byte[] plain, byte[] aad) {
+        try {
+            byte[] iv = newNonce();
+            Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, iv, aad);
 
-            byte[] out = new byte[iv.length + cipherText.length];
-            System.arraycopy(iv, 0, out, 0, iv.length);
-            System.arraycopy(cipherText, 0, out, iv.length, cipherText.length);
+            // nonce 뒤에 바로 암호문을 써서 중간 복사 없음
+            byte[] out = new byte[GCM_NONCE_LENGTH + cipher.getOutputSize(plain.length)];
+            System.arraycopy(iv, 0, out, 0, GCM_NONCE_LENGTH);
+            cipher.doFinal(plain, 0, plain.length, out, GCM_NONCE_LENGTH);
             return out;
         } catch (GeneralSecurityException exception) {
             throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to encrypt data", exception);
@@ -54,43 +53,69 @@ public class EncryptDecrypt {
     }
 
     public static byte[] decrypt(byte[] key, byte[] enc) {
+        return decrypt(key, enc, null);
+    }
+
+    public static byte[] decrypt(byte[] key, byte[] enc, byte[] aad) {
         if (enc.length < GCM_NONCE_LENGTH + GCM_TAG_LENGTH) {
             throw new ReplayShieldException(ErrorType.CRYPTO, "Encrypted data too short");
         }
         try {
-            byte[] iv = Arrays.copyOfRange(enc, 0, GCM_NONCE_LENGTH);
-            byte[] cipherText = Arrays.copyOfRange(enc, GCM_NONCE_LENGTH, enc.length);
-
+            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, enc, 0, GCM_NONCE_LENGTH);
             Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            SecretKeySpec ks = new SecretKeySpec(key, "AES");
-            cipher.init(Cipher.DECRYPT_MODE, ks, spec);
-
-            return cipher.doFinal(cipherText);
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, "AES"), spec);
+            if (aad != null) {
+                cipher.updateAAD(aad);
+            }
+            return cipher.doFinal(enc, GCM_NONCE_LENGTH, enc.length - GCM_NONCE_LENGTH);
         } catch (GeneralSecurityException exception) {
             throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to decrypt data", exception);
         }
     }
 
-    public static void encryptFile(byte[] key, Path plainFile, Path encFile) {
-        try {
-            byte[] plain = Files.readAllBytes(plainFile);
-            byte[] enc = encrypt(key, plain);
-            Files.write(encFile, enc);
-            Arrays.fill(plain, (byte) 0);
-        } catch (IOException exception) {
-            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to encrypt database file", exception);
-        }
+    // 메모리 DB 이미지 암호화 저장 (호출자는 SegmentedCipherFile.lockForWrite 잠금을 쥐고 있어야 함)
+    public static void encryptBytes(byte[] key, byte[] plain, Path encFile) {
+        SegmentedCipherFile.create(key, encFile).write(plain);
     }
 
-    public static void decryptFile(byte[] key, Path encFile, Path plainFile) {
+    // 암호화 DB를 메모리로 복호화 (평문이 파일로 남지 않음)
+    public static byte[] decryptToBytes(byte[] key, Path encFile) {
+        if (SegmentedCipherFile.hasSnapshot(encFile)) {
+            return SegmentedCipherFile.load(key, encFile).plain();
+        }
+        // 기존 단일 GCM 포맷은 태그가 파일 끝에 하나뿐이고 JDK GCM은 doFinal 전까지 평문을 내보내지 않으므로
+        // 스트리밍해도 메모리가 줄지 않는다 - 암호문 + 평문 두 배 크기의 힙을 쓰지만 최초 전환 시 한 번만 거치는 경로
         try {
-            byte[] enc = Files.readAllBytes(encFile);
-            byte[] plain = decrypt(key, enc);
-            Files.write(plainFile, plain);
-            Arrays.fill(plain, (byte) 0);
+            return decrypt(key, Files.readAllBytes(encFile));
         } catch (IOException exception) {
             throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to decrypt database file", exception);
         }
     }
+
+    static byte[] newNonce() {
+        byte[] iv = new byte[GCM_NONCE_LENGTH];
+        rnd.nextBytes(iv);
+        return iv;
+    }
+
+    static Cipher initCipher(int mode, byte[] key, byte[] iv, byte[] aad) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, new SecretKeySpec(key, "AES"), new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        return cipher;
+    }
+
+    // 평문이 남지 않도록 버퍼 전체를 0으로 덮어씀
+    static void wipe(ByteBuffer buf) {
+        buf.clear();
+        while (buf.remaining() >= Long.BYTES) {
+            buf.putLong(0L);
+        }
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
+        }
+        buf.clear();
+    }
 }
@@ -1,22 +1,83 @@
 package dev.replayshield.security;
 
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
 
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 
-public class KeyDerivation {
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
 
-    public static byte[] deriveKey(char[] password, byte[] salt)
-            throws NoSuchAlgorithmException, InvalidKeySpecException {
-        PBEKeySpec spec = new PBEKeySpec(password, salt, 100_000, 256);
-        SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-        return skf.generateSecret(spec).getEncoded();
+/**
+ * 관리자 암호 → AES 키 유도 (PBKDF2-HMAC-SHA256).
+ * 반복 횟수는 salt 파일에 salt와 함께 저장해서, 설정이 바뀌어도 기존 키는 만들 때의 횟수로 다시 유도한다.
+ * salt 파일 형식: "RSKD" | 반복 횟수(4) | salt. 32바이트 salt만 있는 기존 파일은 200,000회로 본다.
+ */
+public final class KeyDerivation {
+
+    public static final int DEFAULT_ITERATIONS = 200_000;
+    private static final int SALT_LEN = 32;
+    private static final int KEY_LEN = 256; // bits
+    private static final byte[] MAGIC = { 'R', 'S', 'K', 'D' };
+
+    private KeyDerivation() {
+    }
+
+    // 유도에 필요한 salt + 반복 횟수
+    public record Params(byte[] salt, int iterations) {
+    }
+
+    public static Params newParams(int iterations) {
+        try {
+            byte[] salt = new byte[SALT_LEN];
+            SecureRandom.getInstanceStrong().nextBytes(salt);
+            return new Params(salt, iterations);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to acquire secure random instance",
+                    exception);
+        }
+    }
+
+    public static byte[] deriveKey(char[] password, Params params) {
+        PBEKeySpec spec = new PBEKeySpec(password, params.salt(), params.iterations(), KEY_LEN);
+        try {
+            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            return skf.generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException exception) {
+            throw new ReplayShieldException(ErrorType.ADMIN_AUTH, "Failed to derive admin key", exception);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public static byte[] encode(Params params) {
+        return ByteBuffer.allocate(MAGIC.length + Integer.BYTES + params.salt().length)
+                .put(MAGIC)
+                .putInt(params.iterations())
+                .put(params.salt())
+                .array();
     }
 
-    public static byte[] generateSalt() {
-        return new SecureRandom().generateSeed(16);
+    public static Params decode(byte[] data) {
+        if (data.length == SALT_LEN) {
+            // 반복 횟수 기록 이전 형식
+            return new Params(data.clone(), DEFAULT_ITERATIONS);
+        }
+        if (data.length != MAGIC.length + Integer.BYTES + SALT_LEN
+                || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Unrecognized salt file format");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, MAGIC.length, data.length - MAGIC.length);
+        int iterations = buf.getInt();
+        if (iterations <= 0) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Invalid PBKDF2 iteration count in salt file");
+        }
+        byte[] salt = new byte[SALT_LEN];
+        buf.get(salt);
+        return new Params(salt, iterations);
     }
 }
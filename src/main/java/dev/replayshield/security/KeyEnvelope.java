@@ -0,0 +1,120 @@
+package dev.replayshield.security;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 데이터 키 봉투 암호화.
+ * DB와 저널은 무작위 데이터 키로 암호화하고, 데이터 키는 관리자 암호에서 유도한 키로 AES-GCM 봉인해 키 파일(salt.bin)에 둔다.
+ * 관리자 암호 변경은 32바이트 데이터 키만 다시 봉인하므로 데이터 파일은 건드리지 않는다.
+ * 키 파일 형식: "RSKW" | 반복 횟수(4) | salt(32) | nonce + 봉인된 데이터 키 + tag. 앞부분은 AAD로 함께 인증한다.
+ * salt만 있는 기존 파일은 유도 키가 곧 데이터 키다.
+ */
+public final class KeyEnvelope {
+
+    public static final int DATA_KEY_LEN = 32;
+    private static final int SALT_LEN = 32;
+    private static final int WRAPPED_LEN = EncryptDecrypt.GCM_NONCE_LENGTH + DATA_KEY_LEN
+            + EncryptDecrypt.GCM_TAG_LENGTH;
+    private static final byte[] MAGIC = { 'R', 'S', 'K', 'W' };
+
+    private final KeyDerivation.Params params;
+    // null이면 봉투 도입 이전 파일
+    private final byte[] wrappedKey;
+
+    private KeyEnvelope(KeyDerivation.Params params, byte[] wrappedKey) {
+        this.params = params;
+        this.wrappedKey = wrappedKey;
+    }
+
+    public static byte[] newDataKey() {
+        try {
+            byte[] dataKey = new byte[DATA_KEY_LEN];
+            SecureRandom.getInstanceStrong().nextBytes(dataKey);
+            return dataKey;
+        } catch (NoSuchAlgorithmException exception) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to acquire secure random instance",
+                    exception);
+        }
+    }
+
+    // 새 salt/반복 횟수로 데이터 키 봉인
+    public static KeyEnvelope wrap(char[] password, KeyDerivation.Params params, byte[] dataKey) {
+        if (dataKey.length != DATA_KEY_LEN) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Data key must be " + DATA_KEY_LEN + " bytes");
+        }
+        byte[] kek = KeyDerivation.deriveKey(password, params);
+        try {
+            return new KeyEnvelope(params, EncryptDecrypt.encrypt(kek, dataKey, header(params)));
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    // 관리자 암호로 데이터 키 복원. 암호가 틀리면 GCM 검증 실패 → ADMIN_AUTH
+    public byte[] unwrap(char[] password) {
+        byte[] kek = KeyDerivation.deriveKey(password, params);
+        if (wrappedKey == null) {
+            return kek;
+        }
+        try {
+            return EncryptDecrypt.decrypt(kek, wrappedKey, header(params));
+        } catch (ReplayShieldException exception) {
+            throw new ReplayShieldException(ErrorType.ADMIN_AUTH, "Invalid admin password (key unwrap failed)",
+                    exception);
+        } finally {
+            Arrays.fill(kek, (byte) 0);
+        }
+    }
+
+    // 기존 salt 전용 파일 - 검증 후 봉투 형식으로 옮겨야 함
+    public boolean isLegacy() {
+        return wrappedKey == null;
+    }
+
+    public KeyDerivation.Params params() {
+        return params;
+    }
+
+    public byte[] encode() {
+        if (wrappedKey == null) {
+            return KeyDerivation.encode(params);
+        }
+        return ByteBuffer.allocate(MAGIC.length + Integer.BYTES + SALT_LEN + WRAPPED_LEN)
+                .put(header(params))
+                .put(wrappedKey)
+                .array();
+    }
+
+    public static KeyEnvelope decode(byte[] data) {
+        if (data.length < MAGIC.length || !Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            return new KeyEnvelope(KeyDerivation.decode(data), null);
+        }
+        if (data.length != MAGIC.length + Integer.BYTES + SALT_LEN + WRAPPED_LEN) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Corrupted key file");
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, MAGIC.length, data.length - MAGIC.length);
+        int iterations = buf.getInt();
+        if (iterations <= 0) {
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Invalid PBKDF2 iteration count in key file");
+        }
+        byte[] salt = new byte[SALT_LEN];
+        buf.get(salt);
+        byte[] wrapped = new byte[WRAPPED_LEN];
+        buf.get(wrapped);
+        return new KeyEnvelope(new KeyDerivation.Params(salt, iterations), wrapped);
+    }
+
+    private static byte[] header(KeyDerivation.Params params) {
+        return ByteBuffer.allocate(MAGIC.length + Integer.BYTES + SALT_LEN)
+                .put(MAGIC)
+                .putInt(params.iterations())
+                .put(params.salt())
+                .array();
+    }
+}
@@ -1,45 +1,44 @@
 package dev.replayshield.security;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.GeneralSecurityException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Arrays;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-
 import dev.replayshield.Main;
 import dev.replayshield.db.SecureDbSession;
 import dev.replayshield.db.SecureDbSession.DbSession;
+import dev.replayshield.util.ErrorReporter;
 import dev.replayshield.util.PathResolver;
+import dev.replayshield.util.ReplayShieldConfig;
 import dev.replayshield.util.ReplayShieldException;
 import dev.replayshield.util.ReplayShieldException.ErrorType;
 
 public class KeyLoader {
 
-    private static final int SALT_LEN = 32;
-    private static final int ITER = 200_000;
-    private static final int KEY_LEN = 256; // bits
-
     public static boolean saltExists() {
         return PathResolver.getSaltFile().exists();
     }
 
-    private static byte[] generateSalt() {
+    // 새 salt 생성 시 반복 횟수는 설정 파일 값 (기존 salt는 저장된 횟수 유지)
+    // 설정 파일이 잘못되어도 초기화/암호 변경은 막지 않고 기본값 사용
+    private static KeyDerivation.Params newKeyParams() {
+        int iterations;
         try {
-            byte[] salt = new byte[SALT_LEN];
-            SecureRandom.getInstanceStrong().nextBytes(salt);
-            return salt;
-        } catch (NoSuchAlgorithmException exception) {
-            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to acquire secure random instance",
-                    exception);
+            iterations = ReplayShieldConfig.load(PathResolver.getConfigFile().toPath()).startup().pbkdf2Iterations();
+        } catch (ReplayShieldException exception) {
+            iterations = ReplayShieldConfig.defaults().startup().pbkdf2Iterations();
+            ErrorReporter.logError("Config", "Using default PBKDF2 iterations (" + iterations + "): "
+                    + exception.getMessage());
         }
+        return KeyDerivation.newParams(iterations);
     }
 
     // ========= PW input =========
@@ -48,30 +47,36 @@ public class KeyLoader {
         return Main.CONSOLE.readPassword();
     }
 
-    // 평문 패스워드 Salt 암호화
-    private static byte[] deriveKey(char[] pw, byte[] salt) {
-        try {
-            PBEKeySpec spec = new PBEKeySpec(pw, salt, ITER, KEY_LEN);
-            SecretKeyFactory skf = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            return skf.generateSecret(spec).getEncoded();
-        } catch (GeneralSecurityException exception) {
-            throw new ReplayShieldException(ErrorType.ADMIN_AUTH, "Failed to derive admin key", exception);
-        }
-    }
-
-    private static void saveSalt(byte[] salt) {
+    // 키 파일은 데이터 키의 유일한 사본 - 임시 파일에 쓰고 fsync 후 rename (중간에 끊겨도 이전 파일 유지).
+    // rename 뒤 디렉터리도 fsync - 안 하면 충돌 후 이전 키 파일(이전 암호)로 되돌아갈 수 있음
+    private static void saveKeyFile(KeyEnvelope envelope) {
+        Path keyFile = PathResolver.getSaltFile().toPath();
+        Path tmp = keyFile.resolveSibling(keyFile.getFileName() + ".tmp");
         try {
-            Files.write(PathResolver.getSaltFile().toPath(), salt);
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buf = ByteBuffer.wrap(envelope.encode());
+                while (buf.hasRemaining()) {
+                    ch.write(buf);
+                }
+                ch.force(true);
+            }
+            Files.move(tmp, keyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            SegmentedCipherFile.syncDirectory(keyFile.toAbsolutePath().getParent());
         } catch (IOException exception) {
-            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to write salt file", exception);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to write key file", exception);
         }
     }
 
-    private static byte[] loadSalt() {
+    private static KeyEnvelope loadKeyFile() {
         try {
-            return Files.readAllBytes(PathResolver.getSaltFile().toPath());
+            return KeyEnvelope.decode(Files.readAllBytes(PathResolver.getSaltFile().toPath()));
         } catch (IOException exception) {
-            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to load salt file", exception);
+            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to load key file", exception);
         }
     }
 
@@ -91,12 +96,9 @@ public class KeyLoader {
             return false;
         }
 
-        // salt 생성
-        byte[] salt = generateSalt();
-        saveSalt(salt);
-
-        // 키 생성
-        byte[] key = deriveKey(p1, salt);
+        // 무작위 데이터 키 생성 → 관리자 암호 유도 키로 봉인해 저장
+        byte[] key = KeyEnvelope.newDataKey();
+        saveKeyFile(KeyEnvelope.wrap(p1, newKeyParams(), key));
 
         Arrays.fill(p1, '\0');
         Arrays.fill(p2, '\0');
@@ -117,11 +119,13 @@ public class KeyLoader {
         Path encFile = PathResolver.getEncryptedDbFile().toPath();
         try {
             Files.deleteIfExists(encFile);
+            Files.deleteIfExists(SegmentedCipherFile.previousFile(encFile));
+            Files.deleteIfExists(PathResolver.getJournalFile().toPath());
         } catch (IOException exception) {
             throw new ReplayShieldException(ErrorType.INITIALIZATION, "Failed to clean old encrypted DB", exception);
         }
 
-        // SecureDbSession 내부에서 tmpfs DB 생성 → 스키마 자동 생성 → 암호화 저장
+        // SecureDbSession 내부에서 메모리 DB 생성 → 스키마 자동 생성 → 암호화 저장
         try (DbSession session = SecureDbSession.openWritable(key)) {
             session.connection(); // 연결 -> 스키마 자동 생성
             // try문 종료시 session.close() 자동 호출
@@ -140,14 +144,29 @@ public class KeyLoader {
         }
 
         char[] pw = passwordPrompt("ReplayShield Admin password: ");
-        byte[] salt = loadSalt();
-
-        byte[] key = deriveKey(pw, salt);
-        Arrays.fill(pw, '\0');
-
-        verifyKeyAgainstDb(key);
+        KeyEnvelope envelope = loadKeyFile();
+        try {
+            // 봉투 형식이면 GCM 검증으로 암호 확인 - DB 복호화 불필요
+            byte[] key = envelope.unwrap(pw);
+            if (envelope.isLegacy()) {
+                verifyKeyAgainstDb(key);
+                migrateLegacyKeyFile(pw, key);
+            }
+            return key;
+        } finally {
+            Arrays.fill(pw, '\0');
+        }
+    }
 
-        return key;
+    // salt만 있던 기존 설치: 지금까지의 유도 키를 그대로 데이터 키로 봉인 (데이터 파일은 그대로)
+    private static void migrateLegacyKeyFile(char[] pw, byte[] key) {
+        try {
+            saveKeyFile(KeyEnvelope.wrap(pw, newKeyParams(), key));
+            System.out.println("Key file upgraded to wrapped data key format.");
+        } catch (ReplayShieldException exception) {
+            // 기존 파일은 그대로 남으므로 다음 로그인 때 다시 시도
+            ErrorReporter.logError("KeyLoader", "Key file upgrade failed: " + exception.getMessage());
+        }
     }
 
     // key 검증 → 복호화 후 sqlite_master 조회 가능해야 정상 key
@@ -183,41 +202,28 @@ public class KeyLoader {
         }
     }
 
-    public static byte[] changeAdminPassword(byte[] currentKey) {
+    // 관리자 암호 변경 - 데이터 키를 새 암호로 다시 봉인만 함.
+    // DB/저널은 그대로이므로 실행 중인 서버와 캐시된 키도 계속 유효
+    public static boolean changeAdminPassword(byte[] currentKey) {
         if (currentKey == null || currentKey.length == 0) {
             throw new ReplayShieldException(ErrorType.ADMIN_AUTH, "Current admin key is not available.");
         }
         if (!saltExists()) {
             throw new ReplayShieldException(ErrorType.INITIALIZATION, "Salt not found. Run init first.");
         }
-        Path encFile = PathResolver.getEncryptedDbFile().toPath();
-        if (!Files.exists(encFile)) {
-            throw new ReplayShieldException(ErrorType.INITIALIZATION, "Encrypted DB not found. Run init first.");
-        }
 
         char[] newPw = passwordPrompt("New admin password: ");
         char[] confirm = passwordPrompt("Confirm new admin password: ");
-        if (!Arrays.equals(newPw, confirm)) {
-            System.out.println("Passwords do not match. Aborting.");
-            Arrays.fill(newPw, '\0');
-            Arrays.fill(confirm, '\0');
-            return null;
-        }
-        Arrays.fill(confirm, '\0');
-
-        byte[] newSalt = generateSalt();
-        byte[] newKey = deriveKey(newPw, newSalt);
-        Arrays.fill(newPw, '\0');
-
-        Path tmp = PathResolver.createMemoryDbTempFile();
         try {
-            EncryptDecrypt.decryptFile(currentKey, encFile, tmp);
-            EncryptDecrypt.encryptFile(newKey, tmp, encFile);
-            saveSalt(newSalt);
-            return newKey;
+            if (!Arrays.equals(newPw, confirm)) {
+                System.out.println("Passwords do not match. Aborting.");
+                return false;
+            }
+            saveKeyFile(KeyEnvelope.wrap(newPw, newKeyParams(), currentKey));
+            return true;
         } finally {
-            Arrays.fill(newSalt, (byte) 0);
-            Main.deleteQuietly(tmp);
+            Arrays.fill(newPw, '\0');
+            Arrays.fill(confirm, '\0');
         }
     }
 }
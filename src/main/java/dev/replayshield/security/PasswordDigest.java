@@ -0,0 +1,108 @@
+package dev.replayshield.security;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 패스워드 SHA-256 digest (32바이트, DB에는 BLOB으로 저장).
+ * 요청마다 가상 스레드가 새로 생기므로 ThreadLocal 대신 작은 공용 풀에서 MessageDigest를 빌려 쓰고,
+ * 풀이 비면 원형(prototype)을 복제한다 (getInstance의 provider 조회 없음).
+ * 평문은 String을 거치지 않으며 사용한 버퍼는 바로 0으로 지운다.
+ */
+public final class PasswordDigest {
+
+    public static final int LENGTH = 32;
+
+    // 유휴 digest 보관 수 - 동시에 이보다 많이 쓰이면 초과분은 반납 시 버림
+    private static final int POOL_SIZE = 64;
+    private static final MessageDigest PROTOTYPE = newDigest();
+    private static final ArrayBlockingQueue<MessageDigest> POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private PasswordDigest() {
+    }
+
+    public static byte[] sha256(byte[] utf8, int offset, int length) {
+        MessageDigest md = acquire();
+        try {
+            md.update(utf8, offset, length);
+            return md.digest();
+        } finally {
+            // digest()가 상태를 초기화하지만 update 중 예외에 대비해 한 번 더
+            md.reset();
+            POOL.offer(md);
+        }
+    }
+
+    public static byte[] sha256(byte[] utf8) {
+        return sha256(utf8, 0, utf8.length);
+    }
+
+    // 관리 CLI 입력용 - char[] → UTF-8 (문자당 최대 3바이트, 서로게이트 쌍은 4바이트)
+    public static byte[] sha256(char[] pw) {
+        byte[] buf = new byte[pw.length * 3];
+        int n = encodeUtf8(pw, buf);
+        try {
+            return sha256(buf, 0, n);
+        } finally {
+            Arrays.fill(buf, 0, n, (byte) 0);
+        }
+    }
+
+    // 타이밍 차이 없는 비교
+    public static boolean matches(byte[] a, byte[] b) {
+        return MessageDigest.isEqual(a, b);
+    }
+
+    // String.getBytes(UTF_8)과 같은 결과 (짝 없는 서로게이트는 '?')
+    private static int encodeUtf8(char[] src, byte[] dst) {
+        int n = 0;
+        for (int i = 0; i < src.length; i++) {
+            char c = src[i];
+            if (c < 0x80) {
+                dst[n++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[n++] = (byte) (0xC0 | (c >> 6));
+                dst[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < src.length
+                    && Character.isLowSurrogate(src[i + 1])) {
+                int cp = Character.toCodePoint(c, src[++i]);
+                dst[n++] = (byte) (0xF0 | (cp >> 18));
+                dst[n++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[n++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[n++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                dst[n++] = (byte) '?';
+            } else {
+                dst[n++] = (byte) (0xE0 | (c >> 12));
+                dst[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return n;
+    }
+
+    private static MessageDigest acquire() {
+        MessageDigest md = POOL.poll();
+        if (md != null) {
+            return md;
+        }
+        try {
+            return (MessageDigest) PROTOTYPE.clone();
+        } catch (CloneNotSupportedException exception) {
+            return newDigest();
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "SHA-256 digest not available", exception);
+        }
+    }
+}
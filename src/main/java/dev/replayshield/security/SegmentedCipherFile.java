@@ -0,0 +1,562 @@
+package dev.replayshield.security;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+import javax.crypto.Cipher;
+
+import dev.replayshield.util.ErrorReporter;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 세그먼트 단위 암호화 DB 파일 포맷 (v1).
+ *
+ * <pre>
+ * [preamble 16B: "RSSG" | version(1) | 0(3) | segmentSize(4) | generation(4)]
+ * [slot 0][slot 1]...[slot n-1]       slot = nonce(12) + 암호문(최대 segmentSize) + tag(16)
+ * [sealed header][header length(4)]
+ * </pre>
+ *
+ * 각 세그먼트는 (fileId, index, 쓰기 카운터)를 AAD로 개별 봉인되고,
+ * 헤더는 전체 길이/세그먼트 수/세그먼트별 카운터를 담아 preamble(세대 번호 포함)을 AAD로 봉인된다.
+ * 저장은 항상 같은 디렉터리의 임시 파일에 새 세대로 쓰고 fsync 후 rename으로 교체한다.
+ * serve 스냅샷과 manage CLI가 같은 파일을 교체하므로 저장하는 쪽은 {@link #lockForWrite}로 프로세스 간 잠금을 잡는다.
+ * 평문 다이제스트가 바뀐 세그먼트만 다시 봉인하고 나머지는 기존 암호문을 그대로 복사한다.
+ * 교체 직전 세대는 {@code .prev}로 남겨 두고, 최신 파일이 인증에 실패하면 읽기 시 그 세대로 대신한다.
+ * 봉인/해제 작업 버퍼는 세그먼트 크기의 direct 버퍼 하나씩만 재사용한다 (평문 이미지는 호출자 소유).
+ */
+public final class SegmentedCipherFile {
+
+    private static final byte[] MAGIC = { 'R', 'S', 'S', 'G' };
+    private static final byte VERSION = 1;
+    private static final int PREAMBLE_LENGTH = 16;
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int FILE_ID_LENGTH = 16;
+    // SQLite 기본 페이지(4096) 16개 단위
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 4096;
+
+    private final byte[] key;
+    private final Path encFile;
+    private final int segmentSize;
+    private byte[] fileId;
+    private int[] counters = new int[0];
+    private byte[][] digests = new byte[0][];
+    private int segmentCount;
+    private boolean rewriteAll;
+    // 마지막으로 저장/읽은 세대 번호
+    private int generation;
+    // 최신 파일 대신 이전 세대에서 읽은 경우 - 다음 저장 때 손상된 파일을 .prev로 돌리지 않음
+    private boolean readFromPrevious;
+    // 세그먼트 크기 direct 버퍼 - 처음 쓸 때 만들고 인스턴스 수명 동안 재사용
+    // (한 인스턴스의 읽기/저장은 호출 측 잠금으로 직렬화됨)
+    private ByteBuffer plainBuffer;
+    private ByteBuffer sealedBuffer;
+
+    private SegmentedCipherFile(byte[] key, Path encFile, int segmentSize) {
+        this.key = key;
+        this.encFile = encFile;
+        this.segmentSize = segmentSize;
+    }
+
+    public static boolean isSegmented(Path encFile) {
+        if (!Files.exists(encFile)) {
+            return false;
+        }
+        try (FileChannel ch = FileChannel.open(encFile, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+            while (magic.hasRemaining() && ch.read(magic) >= 0) {
+                // 끝까지 읽기
+            }
+            return !magic.hasRemaining() && Arrays.equals(magic.array(), MAGIC);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to inspect encrypted DB file", exception);
+        }
+    }
+
+    // 최신 또는 직전 세대 중 하나라도 세그먼트 포맷이면 true (최신 파일 앞부분이 손상된 경우 포함)
+    public static boolean hasSnapshot(Path encFile) {
+        return isSegmented(encFile) || isSegmented(previousFile(encFile));
+    }
+
+    // 직전 세대 파일 (최신 파일 복구용)
+    public static Path previousFile(Path encFile) {
+        return encFile.resolveSibling(encFile.getFileName() + ".prev");
+    }
+
+    // 저장 측 프로세스 간 잠금 파일
+    public static Path lockFile(Path encFile) {
+        return encFile.resolveSibling(encFile.getFileName() + ".lock");
+    }
+
+    /*
+     * 저장 잠금 획득 - 다른 프로세스가 쥐고 있으면 풀릴 때까지 대기.
+     * 최신 세대 확인 → write → rename → 저널 정리까지 한 잠금 구간으로 묶어야 한다.
+     * FileChannel.lock은 프로세스 단위이므로 같은 프로세스 안의 저장은 호출 측 잠금으로 직렬화할 것.
+     */
+    public static WriteLock lockForWrite(Path encFile) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(lockFile(encFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.lock();
+            return new WriteLock(channel);
+        } catch (IOException | RuntimeException exception) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    exception.addSuppressed(closeException);
+                }
+            }
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to lock encrypted DB file", exception);
+        }
+    }
+
+    /** 저장 잠금. 닫으면 해제된다. */
+    public static final class WriteLock implements AutoCloseable {
+
+        private final FileChannel channel;
+
+        private WriteLock(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                ErrorReporter.logError("SegmentedCipherFile", exception);
+            }
+        }
+    }
+
+    // 디스크 최신 파일의 세대 번호 (다른 프로세스의 저장 감지용). 없거나 세그먼트 포맷이 아니면 0
+    public static int currentGeneration(Path encFile) {
+        return readGeneration(encFile);
+    }
+
+    // 아직 세그먼트 포맷이 아닌 파일용 - 첫 저장 시 전체를 새 포맷으로 씀 (세대 번호는 기존 파일에서 이어감)
+    public static SegmentedCipherFile create(byte[] key, Path encFile) {
+        SegmentedCipherFile file = new SegmentedCipherFile(key, encFile, DEFAULT_SEGMENT_SIZE);
+        file.fileId = randomBytes(FILE_ID_LENGTH);
+        file.rewriteAll = true;
+        file.generation = Math.max(readGeneration(encFile), readGeneration(previousFile(encFile)));
+        return file;
+    }
+
+    // 세그먼트 파일 복호화 → plainFile, 이후 증분 저장용 상태 반환
+    public static SegmentedCipherFile open(byte[] key, Path encFile, Path plainFile) {
+        return withFallback(encFile, source -> {
+            try (FileChannel out = FileChannel.open(plainFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return decrypt(key, encFile, source, (position, plain) -> writeFully(out, plain, position), null);
+            } catch (IOException exception) {
+                throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to decrypt segmented DB file", exception);
+            }
+        });
+    }
+
+    // 세그먼트 파일 복호화 → 메모리 (임시 파일 없음)
+    public static Loaded load(byte[] key, Path encFile) {
+        byte[][] image = new byte[1][];
+        SegmentedCipherFile file = withFallback(encFile, source -> {
+            try {
+                return decrypt(key, encFile, source,
+                        (position, plain) -> plain.get(image[0], (int) position, plain.remaining()),
+                        length -> image[0] = new byte[Math.toIntExact(length)]);
+            } catch (RuntimeException exception) {
+                // 인증 실패 전까지 복호화된 부분 지우기
+                if (image[0] != null) {
+                    Arrays.fill(image[0], (byte) 0);
+                }
+                throw exception;
+            }
+        });
+        return new Loaded(file, image[0]);
+    }
+
+    public record Loaded(SegmentedCipherFile file, byte[] plain) {
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    // 최신 파일이 읽히지 않으면(GCM 인증 실패, 잘림 등) 직전 세대로 재시도
+    private static SegmentedCipherFile withFallback(Path encFile, Reader reader) {
+        try {
+            return reader.read(encFile);
+        } catch (ReplayShieldException exception) {
+            Path previous = previousFile(encFile);
+            if (!isSegmented(previous)) {
+                throw exception;
+            }
+            SegmentedCipherFile file;
+            try {
+                file = reader.read(previous);
+            } catch (ReplayShieldException previousException) {
+                exception.addSuppressed(previousException);
+                throw exception;
+            }
+            file.readFromPrevious = true;
+            ErrorReporter.logError("SegmentedCipherFile", "Latest snapshot " + encFile + " is unreadable ("
+                    + exception.getMessage() + "), using previous generation " + file.generation);
+            // 다음 저장 세대가 손상된 파일의 세대보다 작아지지 않도록
+            file.generation = Math.max(file.generation, readGeneration(encFile));
+            return file;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Reader {
+        SegmentedCipherFile read(Path source);
+    }
+
+    // 세대 번호만 확인 (인증 전 값, 새 세대 번호 결정용). 없거나 세그먼트 포맷이 아니면 0
+    private static int readGeneration(Path file) {
+        if (!isSegmented(file)) {
+            return 0;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+            readFully(ch, preamble, 0);
+            return preamble.getInt(12);
+        } catch (IOException | ReplayShieldException exception) {
+            return 0;
+        }
+    }
+
+    // source에서 읽고, 이후 저장 대상은 encFile
+    private static SegmentedCipherFile decrypt(byte[] key, Path encFile, Path source, SegmentTarget target,
+            LongConsumer onLength) {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+            readFully(in, preamble, 0);
+            preamble.flip();
+            byte[] magic = new byte[MAGIC.length];
+            preamble.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || preamble.get() != VERSION) {
+                throw new ReplayShieldException(ErrorType.CRYPTO, "Unsupported encrypted DB format");
+            }
+            preamble.position(8);
+            int segmentSize = preamble.getInt();
+            if (segmentSize <= 0 || segmentSize % 4096 != 0) {
+                throw new ReplayShieldException(ErrorType.CRYPTO, "Invalid segment size");
+            }
+
+            SegmentedCipherFile file = new SegmentedCipherFile(key, encFile, segmentSize);
+            // preamble은 헤더 AAD이므로 헤더 복호화가 성공하면 세대 번호도 검증됨
+            file.generation = preamble.getInt();
+            long plainLength = file.readHeader(in, preamble.array());
+            if (onLength != null) {
+                onLength.accept(plainLength);
+            }
+
+            // 세그먼트 하나 크기의 버퍼만 재사용 (DB 크기와 무관)
+            MessageDigest md = sha256();
+            byte[] nonce = new byte[NONCE_LENGTH];
+            ByteBuffer sealed = file.sealedBuffer();
+            ByteBuffer plain = file.plainBuffer();
+            try {
+                long remaining = plainLength;
+                for (int i = 0; i < file.segmentCount; i++) {
+                    int length = (int) Math.min(segmentSize, remaining);
+                    long offset = file.slotOffset(i);
+                    readFully(in, ByteBuffer.wrap(nonce), offset);
+                    sealed.clear().limit(length + TAG_LENGTH);
+                    readFully(in, sealed, offset + NONCE_LENGTH);
+                    sealed.flip();
+
+                    plain.clear();
+                    Cipher cipher = EncryptDecrypt.initCipher(Cipher.DECRYPT_MODE, key, nonce, file.segmentAad(i));
+                    cipher.doFinal(sealed, plain);
+                    plain.flip();
+                    md.update(plain.duplicate());
+                    file.digests[i] = md.digest();
+                    target.accept((long) i * segmentSize, plain);
+                    remaining -= length;
+                }
+            } finally {
+                EncryptDecrypt.wipe(plain);
+            }
+            return file;
+        } catch (IOException | GeneralSecurityException exception) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to decrypt segmented DB file", exception);
+        }
+    }
+
+    // 변경된 세그먼트만 다시 봉인해서 새 세대로 저장
+    public int write(Path plainFile) {
+        try (FileChannel in = FileChannel.open(plainFile, StandardOpenOption.READ)) {
+            return write(in.size(), (position, dst) -> readFully(in, dst, position));
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to write segmented DB file", exception);
+        }
+    }
+
+    // 메모리 DB 이미지 저장
+    public int write(byte[] plain) {
+        return write(plain.length, (position, dst) -> dst.put(plain, (int) position, dst.remaining()));
+    }
+
+    /*
+     * 호출자는 lockForWrite 잠금을 쥐고 있어야 한다.
+     * 저장마다 새 임시 파일에 전체를 쓰고 fsync → 현재 파일을 .prev로 보존 → rename으로 교체 → 디렉터리 fsync.
+     * 어느 단계에서 중단되어도 encFile은 이전 세대 또는 새 세대 중 하나의 완전한 파일이다.
+     * 실패하면 메모리 상태(카운터/다이제스트/세대)는 바뀌지 않으므로 다음 저장에서 그대로 재시도한다.
+     */
+    private int write(long plainLength, SegmentSource source) {
+        // 변경 없는 세그먼트의 암호문 원본 (마지막으로 읽거나 저장한 파일)
+        Path origin = readFromPrevious ? previousFile(encFile) : encFile;
+        int newCount = (int) ((plainLength + segmentSize - 1) / segmentSize);
+        int[] newCounters = Arrays.copyOf(counters, newCount);
+        byte[][] newDigests = Arrays.copyOf(digests, newCount);
+        int newGeneration = generation + 1;
+        int written = 0;
+        Path tmp;
+        try {
+            tmp = Files.createTempFile(encFile.toAbsolutePath().getParent(), encFile.getFileName() + ".", ".tmp");
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to create temporary DB file", exception);
+        }
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+                FileChannel previous = rewriteAll ? null : FileChannel.open(origin, StandardOpenOption.READ)) {
+            ByteBuffer preamble = preamble(newGeneration);
+            writeFully(out, preamble.duplicate(), 0);
+
+            MessageDigest md = sha256();
+            ByteBuffer plain = plainBuffer();
+            ByteBuffer sealed = sealedBuffer();
+            try {
+                for (int i = 0; i < newCount; i++) {
+                    long position = (long) i * segmentSize;
+                    int length = (int) Math.min(segmentSize, plainLength - position);
+                    plain.clear().limit(length);
+                    source.read(position, plain);
+                    plain.flip();
+                    md.update(plain.duplicate());
+                    byte[] digest = md.digest();
+                    boolean changed = rewriteAll || i >= segmentCount || !Arrays.equals(digest, newDigests[i]);
+                    if (!changed) {
+                        // 평문이 같으면 길이도 같으므로 기존 slot을 같은 위치에 복사 (재암호화 없음)
+                        copyFully(previous, slotOffset(i), NONCE_LENGTH + length + TAG_LENGTH, out);
+                        continue;
+                    }
+                    newCounters[i] = i < segmentCount ? counters[i] + 1 : 0;
+                    byte[] nonce = EncryptDecrypt.newNonce();
+                    Cipher cipher = EncryptDecrypt.initCipher(Cipher.ENCRYPT_MODE, key, nonce,
+                            segmentAad(i, newCounters[i]));
+                    sealed.clear();
+                    cipher.doFinal(plain, sealed);
+                    sealed.flip();
+                    writeFully(out, ByteBuffer.wrap(nonce), slotOffset(i));
+                    writeFully(out, sealed, slotOffset(i) + NONCE_LENGTH);
+                    newDigests[i] = digest;
+                    written++;
+                }
+            } finally {
+                EncryptDecrypt.wipe(plain);
+            }
+
+            writeHeader(out, plainLength, newCount, newCounters, preamble);
+            out.force(true);
+        } catch (IOException | GeneralSecurityException | RuntimeException exception) {
+            deleteQuietly(tmp);
+            if (exception instanceof ReplayShieldException rse) {
+                throw rse;
+            }
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to write segmented DB file", exception);
+        }
+
+        try {
+            replace(tmp);
+        } catch (IOException exception) {
+            deleteQuietly(tmp);
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Failed to replace segmented DB file", exception);
+        }
+        counters = newCounters;
+        digests = newDigests;
+        segmentCount = newCount;
+        generation = newGeneration;
+        rewriteAll = false;
+        readFromPrevious = false;
+        return written;
+    }
+
+    private ByteBuffer plainBuffer() {
+        if (plainBuffer == null) {
+            plainBuffer = ByteBuffer.allocateDirect(segmentSize);
+        }
+        return plainBuffer;
+    }
+
+    private ByteBuffer sealedBuffer() {
+        if (sealedBuffer == null) {
+            sealedBuffer = ByteBuffer.allocateDirect(segmentSize + TAG_LENGTH);
+        }
+        return sealedBuffer;
+    }
+
+    // 현재 파일을 .prev로 보존(하드 링크, 안 되면 복사)한 뒤 tmp를 원자적으로 교체
+    private void replace(Path tmp) throws IOException {
+        Path previous = previousFile(encFile);
+        // 손상된 최신 파일로 정상 .prev를 덮지 않음
+        if (!readFromPrevious && Files.exists(encFile)) {
+            Files.deleteIfExists(previous);
+            try {
+                Files.createLink(previous, encFile);
+            } catch (UnsupportedOperationException | IOException exception) {
+                Files.copy(encFile, previous, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(tmp, encFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        syncDirectory(encFile.toAbsolutePath().getParent());
+    }
+
+    // rename 결과를 디스크에 확정 (지원하지 않는 파일시스템이면 건너뜀)
+    static void syncDirectory(Path dir) {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException exception) {
+            // 디렉터리 fsync 미지원
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException exception) {
+            ErrorReporter.logError("SegmentedCipherFile", exception);
+        }
+    }
+
+    private long readHeader(FileChannel in, byte[] preamble) throws IOException {
+        long size = in.size();
+        ByteBuffer trailer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(in, trailer, size - Integer.BYTES);
+        int headerLength = trailer.flip().getInt();
+        long headerOffset = size - Integer.BYTES - headerLength;
+        if (headerLength <= 0 || headerOffset < PREAMBLE_LENGTH) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Corrupted segmented DB header");
+        }
+        ByteBuffer sealed = ByteBuffer.allocate(headerLength);
+        readFully(in, sealed, headerOffset);
+        ByteBuffer header = ByteBuffer.wrap(EncryptDecrypt.decrypt(key, sealed.array(), preamble));
+
+        fileId = new byte[FILE_ID_LENGTH];
+        header.get(fileId);
+        long plainLength = header.getLong();
+        segmentCount = header.getInt();
+        if (segmentCount != (plainLength + segmentSize - 1) / segmentSize
+                || headerOffset != slotOffset(segmentCount)) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "Segmented DB header does not match file layout");
+        }
+        counters = new int[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            counters[i] = header.getInt();
+        }
+        digests = new byte[segmentCount][];
+        return plainLength;
+    }
+
+    private void writeHeader(FileChannel out, long plainLength, int count, int[] segmentCounters,
+            ByteBuffer preamble) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_ID_LENGTH + Long.BYTES + Integer.BYTES
+                + Integer.BYTES * count);
+        header.put(fileId).putLong(plainLength).putInt(count);
+        for (int i = 0; i < count; i++) {
+            header.putInt(segmentCounters[i]);
+        }
+        byte[] sealed = EncryptDecrypt.encrypt(key, header.array(), preamble.array());
+        ByteBuffer buf = ByteBuffer.allocate(sealed.length + Integer.BYTES);
+        buf.put(sealed).putInt(sealed.length).flip();
+        writeFully(out, buf, slotOffset(count));
+    }
+
+    private ByteBuffer preamble(int generationNumber) {
+        ByteBuffer preamble = ByteBuffer.allocate(PREAMBLE_LENGTH);
+        preamble.put(MAGIC).put(VERSION).put(new byte[3]).putInt(segmentSize).putInt(generationNumber).flip();
+        return preamble;
+    }
+
+    private long slotOffset(int index) {
+        return PREAMBLE_LENGTH + (long) index * (NONCE_LENGTH + segmentSize + TAG_LENGTH);
+    }
+
+    private byte[] segmentAad(int index) {
+        return segmentAad(index, counters[index]);
+    }
+
+    // 위치 바꿔치기/다른 파일 세그먼트 혼입 방지
+    private byte[] segmentAad(int index, int counter) {
+        return ByteBuffer.allocate(FILE_ID_LENGTH + Integer.BYTES * 2)
+                .put(fileId).putInt(index).putInt(counter).array();
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) {
+                throw new ReplayShieldException(ErrorType.CRYPTO, "Unexpected end of encrypted DB file");
+            }
+            pos += n;
+        }
+    }
+
+    private static void copyFully(FileChannel from, long position, long count, FileChannel to) throws IOException {
+        long done = 0;
+        to.position(position);
+        while (done < count) {
+            long n = from.transferTo(position + done, count - done, to);
+            if (n <= 0) {
+                throw new ReplayShieldException(ErrorType.CRYPTO, "Unexpected end of encrypted DB file");
+            }
+            done += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentTarget {
+        void accept(long position, ByteBuffer plain) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface SegmentSource {
+        void read(long position, ByteBuffer dst) throws IOException;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new ReplayShieldException(ErrorType.CRYPTO, "SHA-256 digest not available", exception);
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new SecureRandom().nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,149 @@
+package dev.replayshield.server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * 인증 동시 실행 한도 (admission)와 종료 시 drain.
+ * 제한 시간 안에 permit을 얻지 못한 요청은 바로 503 BUSY로 돌려보내고, permit은 판정이 성공하든 실패하든 반납한다.
+ * drain 시작 후 도착한 요청과, drain 제한 시간이 지나 닫힌 뒤에도 남은 요청은 500 대신 503 BUSY로 끝낸다.
+ */
+final class AuthAdmission {
+
+    private final PermitSemaphore permits;
+    private final ServerMetrics metrics;
+    // 처리 중인 인증 요청 수 (본문 파싱 포함) - 종료 시 drain 대상
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Object drainMonitor = new Object();
+    private volatile boolean draining;
+    // drain이 끝나 엔진/DB를 닫는 중 - 남은 요청은 판정하지 않음
+    private volatile boolean closed;
+
+    // 한도를 늘리면 permit 추가, 줄이면 이후 반납분부터 회수 - 처리 중인 요청은 그대로 진행
+    private static final class PermitSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        private int limit;
+
+        PermitSemaphore(int limit) {
+            super(limit);
+            this.limit = limit;
+        }
+
+        synchronized void resize(int newLimit) {
+            if (newLimit > limit) {
+                release(newLimit - limit);
+            } else if (newLimit < limit) {
+                reducePermits(limit - newLimit);
+            }
+            limit = newLimit;
+        }
+    }
+
+    AuthAdmission(int limit, ServerMetrics metrics) {
+        this.permits = new PermitSemaphore(limit);
+        this.metrics = metrics;
+    }
+
+    void resize(int newLimit) {
+        permits.resize(newLimit);
+    }
+
+    // 요청 시작 (본문 읽기 전). drain 시작 후면 false - 호출자는 reject()로 응답
+    boolean enter() {
+        inFlight.incrementAndGet();
+        if (draining) {
+            leave();
+            return false;
+        }
+        return true;
+    }
+
+    // enter()가 true였던 요청의 끝
+    void leave() {
+        if (inFlight.decrementAndGet() == 0 && draining) {
+            synchronized (drainMonitor) {
+                drainMonitor.notifyAll();
+            }
+        }
+    }
+
+    // 종료 중이라 받지 않은 요청 응답
+    HttpAuthServer.Response reject() {
+        metrics.recordRequest();
+        return busy();
+    }
+
+    // 이후 enter()는 false
+    void startDraining() {
+        draining = true;
+    }
+
+    // 처리 중인 요청이 끝나길 기다림. 제한 시간이 지나면 남은 요청 수 반환
+    int awaitDrain(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        synchronized (drainMonitor) {
+            try {
+                while (inFlight.get() > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(drainMonitor, remaining);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return inFlight.get();
+    }
+
+    // 엔진/DB를 닫기 직전 호출 - 이후 입장하는 요청은 판정 없이, 판정 중 실패한 요청은 500 대신 503
+    void close() {
+        draining = true;
+        closed = true;
+    }
+
+    // 입장 제한, 판정, 응답 코드 결정
+    HttpAuthServer.Response admit(HttpAuthServer.AuthCall call, long timeoutMillis) {
+        metrics.recordRequest();
+        try {
+            // 제한 시간 안에 입장하지 못하면 바로 503 (PAM helper는 즉시 실패 처리)
+            if (closed || !permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return busy();
+            }
+            String result;
+            try {
+                if (closed) {
+                    return busy();
+                }
+                result = call.run();
+            } finally {
+                permits.release();
+            }
+            // 한도 초과는 429로 구분
+            int status = PamAuthHandler.RATE_LIMITED.equals(result) ? 429 : 200;
+            return new HttpAuthServer.Response(status, result);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            metrics.recordError();
+            return new HttpAuthServer.Response(500, "");
+        } catch (Exception exception) {
+            // drain 제한 시간을 넘겨 엔진/DB가 닫히는 중에 실패한 요청 - 오류가 아니라 종료
+            if (closed) {
+                return busy();
+            }
+            metrics.recordError();
+            ErrorReporter.logError("HTTP", exception);
+            return new HttpAuthServer.Response(500, "");
+        }
+    }
+
+    private HttpAuthServer.Response busy() {
+        metrics.recordBusy();
+        return new HttpAuthServer.Response(503, HttpAuthServer.BUSY);
+    }
+}
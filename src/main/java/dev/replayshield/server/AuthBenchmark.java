@@ -0,0 +1,132 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HTTP 전송 비교용 부하 측정. 연결마다 스레드 하나가 keep-alive로 요청/응답을 반복하고
+ * 요청별 지연을 모아 처리량과 백분위 지연을 계산한다.
+ * 요청은 여러 사용자에 돌아가며 나눠 보내서 사용자별 요청 한도 대신 실제 엔진 경로를 측정한다.
+ * (사용자 수가 적으면 RATE_LIMITED가 섞일 수 있으므로 결과별 건수를 함께 보고)
+ */
+public final class AuthBenchmark {
+
+    private AuthBenchmark() {
+    }
+
+    public record Result(long requests, long elapsedNanos, long p50Nanos, long p99Nanos, long maxNanos,
+            Map<String, Long> responses) {
+
+        public double requestsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requests * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d elapsed=%.1fms throughput=%.0f req/s p50=%.3fms p99=%.3fms max=%.3fms %s",
+                    requests, elapsedNanos / 1e6, requestsPerSecond(), p50Nanos / 1e6, p99Nanos / 1e6,
+                    maxNanos / 1e6, new TreeMap<>(responses));
+        }
+    }
+
+    public static Result run(SocketAddress address, String username, byte[] password, int connections,
+            int requestsPerConnection) throws IOException {
+        return run(address, List.of(username), password, connections, requestsPerConnection);
+    }
+
+    // 전체 요청 순번 기준으로 usernames를 돌아가며 사용
+    public static Result run(SocketAddress address, List<String> usernames, byte[] password, int connections,
+            int requestsPerConnection) throws IOException {
+        if (usernames.isEmpty()) {
+            throw new IllegalArgumentException("At least one username is required");
+        }
+        long[][] latencies = new long[connections][];
+        Map<String, AtomicLong> counts = new ConcurrentHashMap<>();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>(connections);
+
+        for (int c = 0; c < connections; c++) {
+            int index = c;
+            Thread thread = new Thread(() -> {
+                long[] samples = new long[requestsPerConnection];
+                try (KeepAliveAuthClient client = new KeepAliveAuthClient(address)) {
+                    ready.countDown();
+                    go.await();
+                    for (int i = 0; i < requestsPerConnection; i++) {
+                        String username = usernames.get((index * requestsPerConnection + i) % usernames.size());
+                        long start = System.nanoTime();
+                        String response = client.authenticate(username, password, 0, password.length, null);
+                        samples[i] = System.nanoTime() - start;
+                        counts.computeIfAbsent(response, key -> new AtomicLong()).incrementAndGet();
+                    }
+                } catch (Exception exception) {
+                    failure.compareAndSet(null, exception);
+                    ready.countDown();
+                } finally {
+                    latencies[index] = samples;
+                }
+            }, "replayshield-bench-" + c);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start;
+        try {
+            ready.await();
+            start = System.nanoTime();
+            go.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Benchmark interrupted", exception);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (failure.get() != null) {
+            throw new IOException("Benchmark connection failed", failure.get());
+        }
+
+        long[] all = new long[connections * requestsPerConnection];
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requestsPerConnection, requestsPerConnection);
+        }
+        Arrays.sort(all);
+        Map<String, Long> responses = new TreeMap<>();
+        counts.forEach((key, value) -> responses.put(key, value.get()));
+        return new Result(all.length, elapsed, percentile(all, 50), percentile(all, 99),
+                all.length == 0 ? 0 : all[all.length - 1], responses);
+    }
+
+    // prefix-0 .. prefix-(count-1). count가 1이면 prefix 그대로
+    public static List<String> usernames(String prefix, int count) {
+        if (count <= 1) {
+            return List.of(prefix);
+        }
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + "-" + i);
+        }
+        return names;
+    }
+
+    // 정렬된 배열의 백분위 (nearest-rank)
+    static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
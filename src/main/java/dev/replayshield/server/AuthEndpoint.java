@@ -0,0 +1,25 @@
+package dev.replayshield.server;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * HTTP 전송 계층이 호출하는 요청 처리 대상 ({@link HttpAuthServer}).
+ * 전송 구현은 요청 줄/헤더만 해석하고 판정은 모두 여기로 넘긴다.
+ */
+interface AuthEndpoint {
+
+    // POST /auth 본문 처리 - body는 contentLength 바이트만 읽음
+    HttpAuthServer.Response processAuth(InputStream body, long contentLength);
+
+    // POST /auth 본문이 이미 전송 버퍼에 다 있는 경우 - [position, limit) 구간을 복사 없이 처리
+    HttpAuthServer.Response processAuth(ByteBuffer body);
+
+    // POST /auth 본문 한도 (전송 계층이 읽기 전에 413 판단, 버퍼 크기 결정)
+    default int maxBodyBytes() {
+        return FormParser.MAX_BODY_BYTES;
+    }
+
+    // GET /metrics
+    String renderMetrics();
+}
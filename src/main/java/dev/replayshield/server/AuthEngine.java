@@ -0,0 +1,64 @@
+package dev.replayshield.server;
+
+import java.sql.SQLException;
+
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * serve 모드 인증 판정 엔진.
+ * 동시성 모델만 다르고 판정 규칙은 모두 {@link PamAuthHandler}와 같다.
+ */
+public interface AuthEngine extends AutoCloseable {
+
+    // PASS/FAIL - pwHash는 SHA-256 digest (32바이트)
+    String authenticate(String username, byte[] pwHash) throws SQLException;
+
+    @Override
+    default void close() {
+    }
+
+    enum Kind {
+        // 사용자별 잠금 - 다른 사용자는 병렬 처리
+        STRIPED("striped"),
+        // 단일 쓰기 스레드 + 묶음 트랜잭션
+        SINGLE_WRITER("single-writer"),
+        // 메모리 상태로 판정, SQL은 비동기 반영
+        MEMORY("memory");
+
+        private final String configName;
+
+        Kind(String configName) {
+            this.configName = configName;
+        }
+
+        public String configName() {
+            return configName;
+        }
+
+        // 확실히 없는 사용자/패스워드를 먼저 걸러내는 필터를 씌워서 생성
+        public AuthEngine create(ResidentDb residentDb) {
+            AuthEngine engine = switch (this) {
+                case STRIPED -> new StripedAuthEngine(residentDb);
+                case SINGLE_WRITER -> new SingleWriterAuthEngine(residentDb);
+                case MEMORY -> new InMemoryAuthEngine(residentDb);
+            };
+            try {
+                return new FilteredAuthEngine(engine, residentDb);
+            } catch (RuntimeException exception) {
+                engine.close();
+                throw exception;
+            }
+        }
+
+        public static Kind fromName(String name) {
+            for (Kind kind : values()) {
+                if (kind.configName.equalsIgnoreCase(name)) {
+                    return kind;
+                }
+            }
+            throw new ReplayShieldException(ErrorType.CONFIGURATION, "Unknown auth engine: " + name);
+        }
+    }
+}
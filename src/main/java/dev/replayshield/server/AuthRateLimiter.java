@@ -0,0 +1,137 @@
+package dev.replayshield.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 사용자 이름별 / 접속 출처(PAM_RHOST)별 token bucket.
+ * DB 작업 전에 검사해서 비밀번호 대입 폭주가 정상 사용자의 로그인 지연으로 번지지 않게 한다.
+ */
+public final class AuthRateLimiter {
+
+    // 추적 키가 이 수를 넘으면 가득 찬(초기 상태와 같은) 버킷부터 정리
+    static final int DEFAULT_MAX_TRACKED_KEYS = 100_000;
+
+    private final TokenBuckets users;
+    private final TokenBuckets sources;
+
+    public AuthRateLimiter(int userPerMinute, int userBurst, int sourcePerMinute, int sourceBurst) {
+        this(userPerMinute, userBurst, sourcePerMinute, sourceBurst, DEFAULT_MAX_TRACKED_KEYS);
+    }
+
+    public AuthRateLimiter(int userPerMinute, int userBurst, int sourcePerMinute, int sourceBurst,
+            int maxTrackedKeys) {
+        this.users = new TokenBuckets(new Rate(userPerMinute, userBurst, maxTrackedKeys));
+        this.sources = new TokenBuckets(new Rate(sourcePerMinute, sourceBurst, maxTrackedKeys));
+    }
+
+    // 실행 중 한도 교체 - 버킷 상태(TAT)는 유지하고 이후 요청부터 새 간격 적용
+    public void reconfigure(int userPerMinute, int userBurst, int sourcePerMinute, int sourceBurst,
+            int maxTrackedKeys) {
+        users.rate = new Rate(userPerMinute, userBurst, maxTrackedKeys);
+        sources.rate = new Rate(sourcePerMinute, sourceBurst, maxTrackedKeys);
+    }
+
+    public enum Decision {
+        ALLOWED,
+        USER_LIMITED,
+        SOURCE_LIMITED
+    }
+
+    // source가 없으면(구버전 helper) 출처 제한은 건너뜀
+    public Decision check(String username, String source) {
+        if (source != null && !source.isEmpty() && !sources.tryAcquire(source)) {
+            return Decision.SOURCE_LIMITED;
+        }
+        if (!users.tryAcquire(username)) {
+            return Decision.USER_LIMITED;
+        }
+        return Decision.ALLOWED;
+    }
+
+    public int userPerMinute() {
+        return users.rate.perMinute;
+    }
+
+    public int userBurst() {
+        return users.rate.burst;
+    }
+
+    public int sourcePerMinute() {
+        return sources.rate.perMinute;
+    }
+
+    public int sourceBurst() {
+        return sources.rate.burst;
+    }
+
+    // 한도 한 벌 - 요청마다 한 번 읽어서 교체 도중 섞인 값을 보지 않음
+    private static final class Rate {
+        private final int perMinute;
+        private final int burst;
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final int maxTrackedKeys;
+
+        Rate(int perMinute, int burst, int maxTrackedKeys) {
+            this.perMinute = perMinute;
+            this.burst = Math.max(burst, 1);
+            this.intervalNanos = perMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / perMinute : 0;
+            this.toleranceNanos = intervalNanos * (this.burst - 1);
+            this.maxTrackedKeys = maxTrackedKeys;
+        }
+    }
+
+    /**
+     * GCRA(generic cell rate algorithm) 방식 token bucket.
+     * 버킷마다 "이론상 다음 도착 시각(TAT)" 하나만 AtomicLong으로 두고 CAS로 갱신하므로 잠금이 없다.
+     * perMinute가 0 이하면 제한 없음.
+     */
+    private static final class TokenBuckets {
+        private volatile Rate rate;
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        TokenBuckets(Rate rate) {
+            this.rate = rate;
+        }
+
+        boolean tryAcquire(String key) {
+            Rate r = rate;
+            if (r.perMinute <= 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            AtomicLong tat = buckets.get(key);
+            if (tat == null) {
+                if (buckets.size() >= r.maxTrackedKeys) {
+                    evictFull(now);
+                    if (buckets.size() >= r.maxTrackedKeys) {
+                        // 추적 한도 초과 - 메모리 보호를 위해 새 키는 제한하지 않음
+                        return true;
+                    }
+                }
+                AtomicLong fresh = new AtomicLong(now);
+                tat = buckets.putIfAbsent(key, fresh);
+                if (tat == null) {
+                    tat = fresh;
+                }
+            }
+            while (true) {
+                long current = tat.get();
+                long base = current - now > 0 ? current : now;
+                if (base - now > r.toleranceNanos) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, base + r.intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        // TAT가 지난 버킷은 가득 찬 상태라 지워도 동작이 같음
+        private void evictFull(long now) {
+            buckets.values().removeIf(tat -> tat.get() - now <= 0);
+        }
+    }
+}
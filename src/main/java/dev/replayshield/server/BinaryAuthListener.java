@@ -0,0 +1,144 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * {@link BinaryAuthProtocol} 리스너 (Unix 도메인 소켓, 권한 0600).
+ * 연결마다 프레임 버퍼 하나를 재사용하고, 요청마다 사용한 영역을 0으로 지운다.
+ * 읽기에서 멈춘 연결은 {@link ReadDeadlines}가 NIO 전송과 같은 기준으로 닫는다.
+ */
+final class BinaryAuthListener implements AutoCloseable {
+
+    private final Path socketPath;
+    private final HttpAuthServer server;
+    private final ExecutorService executor;
+    private final ServerSocketChannel channel;
+    private final ReadDeadlines deadlines;
+    private Thread acceptThread;
+
+    BinaryAuthListener(Path socketPath, HttpAuthServer server, ExecutorService executor) throws IOException {
+        this.socketPath = socketPath;
+        this.server = server;
+        this.executor = executor;
+
+        this.channel = UnixSockets.bind(socketPath);
+        this.deadlines = new ReadDeadlines("BinaryAuthListener", ReadDeadlines.IDLE_TIMEOUT_MILLIS,
+                ReadDeadlines.REQUEST_TIMEOUT_MILLIS);
+    }
+
+    void start() {
+        acceptThread = new Thread(this::acceptLoop, "replayshield-bin-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    private void acceptLoop() {
+        while (channel.isOpen()) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException exception) {
+                return;
+            } catch (IOException exception) {
+                ErrorReporter.logError("BinaryAuthListener", exception);
+                continue;
+            }
+            try {
+                executor.execute(() -> serve(client));
+            } catch (RejectedExecutionException exception) {
+                // 종료 중
+                try {
+                    client.close();
+                } catch (IOException closeException) {
+                    ErrorReporter.logError("BinaryAuthListener", closeException);
+                }
+                return;
+            }
+        }
+    }
+
+    // 연결이 닫히거나 잘못된 프레임이 올 때까지 요청/응답 반복
+    private void serve(SocketChannel client) {
+        byte[] frame = new byte[BinaryAuthProtocol.MAX_FRAME_LENGTH];
+        ByteBuffer frameBuf = ByteBuffer.wrap(frame);
+        ByteBuffer lengthBuf = ByteBuffer.allocate(Short.BYTES);
+        ByteBuffer replyBuf = ByteBuffer.allocate(1);
+        ReadDeadlines.Watch watch = deadlines.watch(client);
+        try (client; watch) {
+            while (true) {
+                lengthBuf.clear();
+                if (!readFully(watch, lengthBuf)) {
+                    return;
+                }
+                watch.beginRequest();
+                int length = Short.toUnsignedInt(lengthBuf.getShort(0));
+                if (length > frame.length) {
+                    reply(client, replyBuf, BinaryAuthProtocol.REPLY_ERROR);
+                    return;
+                }
+                frameBuf.clear().limit(length);
+                try {
+                    if (!readFully(watch, frameBuf)) {
+                        return;
+                    }
+                    watch.endRequest();
+                    BinaryAuthProtocol.Request request = BinaryAuthProtocol.decode(frame, length);
+                    if (request == null) {
+                        reply(client, replyBuf, BinaryAuthProtocol.REPLY_ERROR);
+                        return;
+                    }
+                    HttpAuthServer.Response response = server.processCredentials(request.username(), frame,
+                            request.passwordOffset(), request.passwordLength(), request.rhost());
+                    reply(client, replyBuf, response.status() == 500
+                            ? BinaryAuthProtocol.REPLY_ERROR
+                            : BinaryAuthProtocol.reply(response.body()));
+                } finally {
+                    Arrays.fill(frame, 0, length, (byte) 0);
+                }
+            }
+        } catch (IOException exception) {
+            // 읽기 제한 시간으로 닫은 연결은 기록하지 않음
+            if (!watch.timedOut()) {
+                ErrorReporter.logError("BinaryAuthListener", exception);
+            }
+        }
+    }
+
+    private static boolean readFully(ReadDeadlines.Watch watch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (watch.read(buf) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void reply(SocketChannel client, ByteBuffer replyBuf, byte code) throws IOException {
+        replyBuf.clear();
+        replyBuf.put(code).flip();
+        while (replyBuf.hasRemaining()) {
+            client.write(replyBuf);
+        }
+    }
+
+    @Override
+    public void close() {
+        deadlines.close();
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("BinaryAuthListener", exception);
+        }
+        UnixSockets.unlink(socketPath, "BinaryAuthListener");
+    }
+}
@@ -0,0 +1,132 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 길이 접두 바이너리 인증 프로토콜 (big-endian).
+ * 요청: [프레임 길이 u16][버전 u8][사용자명 길이 u8][사용자명][PW 길이 u16][PW 바이트][rhost 길이 u8][rhost]
+ * 응답: 결과 1바이트 ('P' PASS, 'F' FAIL, 'R' RATE_LIMITED, 'B' BUSY, 'E' ERROR).
+ * 한 연결에서 요청/응답을 순서대로 반복할 수 있다.
+ */
+public final class BinaryAuthProtocol {
+
+    public static final byte VERSION = 1;
+
+    public static final byte REPLY_PASS = 'P';
+    public static final byte REPLY_FAIL = 'F';
+    public static final byte REPLY_RATE_LIMITED = 'R';
+    public static final byte REPLY_BUSY = 'B';
+    public static final byte REPLY_ERROR = 'E';
+
+    static final int MAX_USERNAME_BYTES = 255;
+    static final int MAX_PASSWORD_BYTES = 1024;
+    static final int MAX_RHOST_BYTES = 255;
+    // 길이 접두(u16) 뒤 프레임 본문 최대 크기
+    static final int MAX_FRAME_LENGTH = 1 + 1 + MAX_USERNAME_BYTES + 2 + MAX_PASSWORD_BYTES + 1 + MAX_RHOST_BYTES;
+
+    private BinaryAuthProtocol() {
+    }
+
+    // 디코딩된 요청 - password는 프레임 버퍼 안의 위치로만 가리킴 (복사/String 변환 없음)
+    record Request(String username, int passwordOffset, int passwordLength, String rhost) {
+    }
+
+    // 프레임 본문 해석. 형식이 맞지 않으면 null
+    static Request decode(byte[] frame, int length) {
+        if (length < 5 || length > frame.length || frame[0] != VERSION) {
+            return null;
+        }
+        int pos = 1;
+        int userLength = frame[pos++] & 0xFF;
+        if (userLength == 0 || pos + userLength + 2 > length) {
+            return null;
+        }
+        String username = new String(frame, pos, userLength, StandardCharsets.UTF_8);
+        pos += userLength;
+        int pwLength = ((frame[pos] & 0xFF) << 8) | (frame[pos + 1] & 0xFF);
+        pos += 2;
+        if (pwLength > MAX_PASSWORD_BYTES || pos + pwLength + 1 > length) {
+            return null;
+        }
+        int pwOffset = pos;
+        pos += pwLength;
+        int rhostLength = frame[pos++] & 0xFF;
+        if (pos + rhostLength != length) {
+            return null;
+        }
+        String rhost = rhostLength == 0 ? null : new String(frame, pos, rhostLength, StandardCharsets.US_ASCII);
+        return new Request(username, pwOffset, pwLength, rhost);
+    }
+
+    // 길이 접두 포함 요청 프레임 생성 - 반환 버퍼는 사용 후 호출자가 지움
+    static byte[] encode(String username, byte[] password, String rhost) {
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        byte[] host = rhost == null ? new byte[0] : rhost.getBytes(StandardCharsets.US_ASCII);
+        if (user.length == 0 || user.length > MAX_USERNAME_BYTES || password.length > MAX_PASSWORD_BYTES
+                || host.length > MAX_RHOST_BYTES) {
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "Auth request field too long");
+        }
+        int frameLength = 1 + 1 + user.length + 2 + password.length + 1 + host.length;
+        ByteBuffer buf = ByteBuffer.allocate(2 + frameLength);
+        buf.putShort((short) frameLength);
+        buf.put(VERSION);
+        buf.put((byte) user.length).put(user);
+        buf.putShort((short) password.length).put(password);
+        buf.put((byte) host.length).put(host);
+        return buf.array();
+    }
+
+    static byte reply(String result) {
+        return switch (result) {
+            case "PASS" -> REPLY_PASS;
+            case "FAIL" -> REPLY_FAIL;
+            case PamAuthHandler.RATE_LIMITED -> REPLY_RATE_LIMITED;
+            case HttpAuthServer.BUSY -> REPLY_BUSY;
+            default -> REPLY_ERROR;
+        };
+    }
+
+    public static String replyName(byte reply) {
+        return switch (reply) {
+            case REPLY_PASS -> "PASS";
+            case REPLY_FAIL -> "FAIL";
+            case REPLY_RATE_LIMITED -> PamAuthHandler.RATE_LIMITED;
+            case REPLY_BUSY -> HttpAuthServer.BUSY;
+            default -> "ERROR";
+        };
+    }
+
+    // 테스트용 클라이언트 - 요청 1건 전송 후 응답 바이트 반환. 요청 프레임은 전송 후 지움
+    public static byte call(Path socket, String username, byte[] password, String rhost) {
+        byte[] frame = encode(username, password, rhost);
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            ByteBuffer out = ByteBuffer.wrap(frame);
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            ByteBuffer in = ByteBuffer.allocate(1);
+            while (in.hasRemaining()) {
+                if (channel.read(in) < 0) {
+                    throw new ReplayShieldException(ErrorType.HTTP_SERVER, "Connection closed before reply");
+                }
+            }
+            return in.get(0);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.HTTP_SERVER, "Failed to reach auth socket " + socket,
+                    exception);
+        } finally {
+            Arrays.fill(frame, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.replayshield.server;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.util.BloomFilter;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 등록된 사용자 이름과 (사용자, 패스워드 digest) 쌍의 Bloom filter로
+ * 확실히 없는 요청은 DB 잠금/조회 없이 바로 FAIL 처리하는 엔진 래퍼.
+ * 스캐너가 보내는 임의 사용자/패스워드 시도는 대부분 여기서 끝난다.
+ * 풀은 manage CLI(외부 프로세스)만 바꾸므로 DB 재적재 때마다 다시 만든다.
+ */
+final class FilteredAuthEngine implements AuthEngine, ResidentDb.Mirror {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final AuthEngine delegate;
+    private final ResidentDb residentDb;
+    private volatile Filters filters;
+
+    FilteredAuthEngine(AuthEngine delegate, ResidentDb residentDb) {
+        this.delegate = delegate;
+        this.residentDb = residentDb;
+        try {
+            residentDb.attachMirror(this);
+        } catch (SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to build membership filter",
+                    exception);
+        }
+    }
+
+    private record Filters(BloomFilter users, BloomFilter credentials) {
+    }
+
+    @Override
+    public String authenticate(String username, byte[] pwHash) throws SQLException {
+        // 풀이 바뀌었으면 먼저 재적재 (필터도 함께 재구성)
+        residentDb.syncWithDisk();
+        Filters current = filters;
+        byte[] user = username.getBytes(StandardCharsets.UTF_8);
+        if (!current.users().mightContain(user) || !current.credentials().mightContain(user, pwHash)) {
+            // 없는 사용자/미등록 패스워드는 원래도 기록 없이 FAIL
+            return PamAuthHandler.AuthOutcome.UNKNOWN.response();
+        }
+        return delegate.authenticate(username, pwHash);
+    }
+
+    @Override
+    public void flushPending(Connection conn) {
+        // 인증으로는 풀 구성이 바뀌지 않음
+    }
+
+    @Override
+    public void rebuild(Connection conn) throws SQLException {
+        BloomFilter users = new BloomFilter(count(conn, "SELECT COUNT(*) FROM user_config"), FALSE_POSITIVE_RATE);
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username FROM user_config");
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                users.add(rs.getString(1).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        BloomFilter credentials = new BloomFilter(count(conn, "SELECT COUNT(*) FROM password_pool"),
+                FALSE_POSITIVE_RATE);
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username, pw_hash FROM password_pool");
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                credentials.add(rs.getString(1).getBytes(StandardCharsets.UTF_8), rs.getBytes(2));
+            }
+        }
+        filters = new Filters(users, credentials);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static int count(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+                ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * /auth 요청용 application/x-www-form-urlencoded 스트리밍 파서.
+ * 본문 크기와 필드 수를 제한하고, 값은 percent-decode 하면서 고정 크기 버퍼에 바로 기록한다.
+ * 사용 후 {@link #clear()}로 버퍼를 0으로 지운다. 서버는 {@link Pool}로 인스턴스를 재사용한다.
+ */
+final class FormParser {
+
+    // 기본 본문 최대 크기 (디코딩 결과는 항상 원본 이하이므로 값 버퍼도 같은 크기)
+    static final int MAX_BODY_BYTES = 4 * 1024;
+    // 허용 필드 수 (알 수 없는 필드 포함)
+    static final int MAX_FIELDS = 8;
+    private static final int MAX_NAME_BYTES = 16;
+    private static final int CHUNK_BYTES = 512;
+
+    private static final int FIELD_IGNORED = -1;
+    private static final int FIELD_USERNAME = 0;
+    private static final int FIELD_PASSWORD = 1;
+    private static final int FIELD_RHOST = 2;
+
+    enum Status {
+        OK, MALFORMED, TOO_LARGE
+    }
+
+    /**
+     * 요청마다 값 버퍼를 새로 만들지 않도록 유휴 파서를 보관하는 제한된 풀.
+     * 반납 시 버퍼를 0으로 지우고, 풀이 가득 차 있으면 그 파서는 버린다.
+     */
+    static final class Pool {
+        private final int maxBodyBytes;
+        private final ArrayBlockingQueue<FormParser> idle;
+
+        Pool(int maxBodyBytes, int capacity) {
+            this.maxBodyBytes = maxBodyBytes;
+            this.idle = new ArrayBlockingQueue<>(capacity);
+        }
+
+        FormParser acquire() {
+            FormParser parser = idle.poll();
+            return parser != null ? parser : new FormParser(maxBodyBytes);
+        }
+
+        void release(FormParser parser) {
+            parser.clear();
+            idle.offer(parser);
+        }
+
+        int idleCount() {
+            return idle.size();
+        }
+    }
+
+    private final int maxBodyBytes;
+    private final byte[] values;
+    private final byte[] chunk = new byte[CHUNK_BYTES];
+    private final byte[] name = new byte[MAX_NAME_BYTES];
+    // 필드별 [offset, length] - offset -1이면 없음
+    private final int[] offsets = new int[3];
+    private final int[] lengths = new int[3];
+
+    private int written;
+    private int nameLength;
+    private boolean inName;
+    private int field;
+    private int valueStart;
+    private int fieldCount;
+    // percent escape 상태: 0 없음, 1 '%' 읽음, 2 상위 니블 읽음
+    private int escape;
+    private int high;
+
+    FormParser() {
+        this(MAX_BODY_BYTES);
+    }
+
+    FormParser(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.values = new byte[maxBodyBytes];
+        reset();
+    }
+
+    // declaredLength: Content-Length (모르면 -1, 이 경우 스트림 끝까지 읽되 한도 적용)
+    Status parse(InputStream in, long declaredLength) throws IOException {
+        if (declaredLength > maxBodyBytes) {
+            return Status.TOO_LARGE;
+        }
+        reset();
+        long remaining = declaredLength < 0 ? maxBodyBytes + 1L : declaredLength;
+        long total = 0;
+        try {
+            while (remaining > 0) {
+                int n = in.read(chunk, 0, (int) Math.min(CHUNK_BYTES, remaining));
+                if (n < 0) {
+                    break;
+                }
+                total += n;
+                remaining -= n;
+                if (total > maxBodyBytes) {
+                    return Status.TOO_LARGE;
+                }
+                for (int i = 0; i < n; i++) {
+                    if (!accept(chunk[i])) {
+                        return Status.MALFORMED;
+                    }
+                }
+            }
+        } finally {
+            Arrays.fill(chunk, (byte) 0);
+        }
+        // 선언한 길이보다 짧게 끝났거나 escape 도중 끝남
+        if ((declaredLength >= 0 && total < declaredLength) || escape != 0) {
+            return Status.MALFORMED;
+        }
+        return endSegment() ? Status.OK : Status.MALFORMED;
+    }
+
+    // 이미 받은 본문 전체를 전송 버퍼에서 바로 파싱 (복사 없음, 버퍼 position은 바꾸지 않음)
+    Status parse(ByteBuffer body) {
+        int start = body.position();
+        int end = body.limit();
+        if (end - start > maxBodyBytes) {
+            return Status.TOO_LARGE;
+        }
+        reset();
+        for (int i = start; i < end; i++) {
+            if (!accept(body.get(i))) {
+                return Status.MALFORMED;
+            }
+        }
+        if (escape != 0) {
+            return Status.MALFORMED;
+        }
+        return endSegment() ? Status.OK : Status.MALFORMED;
+    }
+
+    String username() {
+        return text(FIELD_USERNAME, StandardCharsets.UTF_8);
+    }
+
+    String rhost() {
+        return text(FIELD_RHOST, StandardCharsets.US_ASCII);
+    }
+
+    boolean hasPassword() {
+        return offsets[FIELD_PASSWORD] >= 0;
+    }
+
+    // 디코딩된 password는 buffer()의 [passwordOffset, passwordOffset + passwordLength) 구간
+    byte[] buffer() {
+        return values;
+    }
+
+    int passwordOffset() {
+        return offsets[FIELD_PASSWORD];
+    }
+
+    int passwordLength() {
+        return lengths[FIELD_PASSWORD];
+    }
+
+    // 디코딩된 값과 필드 이름 버퍼를 0으로 지움
+    void clear() {
+        Arrays.fill(values, 0, written, (byte) 0);
+        Arrays.fill(name, (byte) 0);
+        reset();
+    }
+
+    private void reset() {
+        written = 0;
+        nameLength = 0;
+        inName = true;
+        field = FIELD_IGNORED;
+        valueStart = 0;
+        fieldCount = 0;
+        escape = 0;
+        high = 0;
+        Arrays.fill(offsets, -1);
+        Arrays.fill(lengths, 0);
+    }
+
+    private boolean accept(byte b) {
+        if (inName) {
+            if (b == '=') {
+                return startValue();
+            }
+            if (b == '&') {
+                return endSegment();
+            }
+            if (nameLength == MAX_NAME_BYTES) {
+                return false;
+            }
+            name[nameLength++] = b;
+            return true;
+        }
+        if (escape == 1) {
+            high = Character.digit(b, 16);
+            escape = 2;
+            return high >= 0;
+        }
+        if (escape == 2) {
+            int low = Character.digit(b, 16);
+            escape = 0;
+            return low >= 0 && emit((byte) ((high << 4) | low));
+        }
+        return switch (b) {
+            case '&' -> endSegment();
+            case '%' -> {
+                escape = 1;
+                yield true;
+            }
+            case '+' -> emit((byte) ' ');
+            case '=' -> false;
+            default -> emit(b);
+        };
+    }
+
+    private boolean startValue() {
+        if (nameLength == 0 || ++fieldCount > MAX_FIELDS) {
+            return false;
+        }
+        field = fieldOf(name, nameLength);
+        // 같은 필드가 두 번 오면 거절
+        if (field != FIELD_IGNORED && offsets[field] >= 0) {
+            return false;
+        }
+        inName = false;
+        valueStart = written;
+        return true;
+    }
+
+    // '&' 또는 본문 끝 - 진행 중인 필드 마무리
+    private boolean endSegment() {
+        if (inName) {
+            // 값 없는 이름("a&")도 필드 수에 포함, 빈 구간("&&")은 무시
+            if (nameLength > 0 && ++fieldCount > MAX_FIELDS) {
+                return false;
+            }
+        } else if (field != FIELD_IGNORED) {
+            offsets[field] = valueStart;
+            lengths[field] = written - valueStart;
+        }
+        Arrays.fill(name, 0, nameLength, (byte) 0);
+        nameLength = 0;
+        inName = true;
+        field = FIELD_IGNORED;
+        return true;
+    }
+
+    private boolean emit(byte b) {
+        // 알 수 없는 필드 값은 저장하지 않음
+        if (field != FIELD_IGNORED) {
+            values[written++] = b;
+        }
+        return true;
+    }
+
+    private String text(int which, Charset charset) {
+        int offset = offsets[which];
+        return offset < 0 ? null : new String(values, offset, lengths[which], charset);
+    }
+
+    private static int fieldOf(byte[] name, int length) {
+        if (matches(name, length, "username")) {
+            return FIELD_USERNAME;
+        }
+        if (matches(name, length, "password")) {
+            return FIELD_PASSWORD;
+        }
+        if (matches(name, length, "rhost")) {
+            return FIELD_RHOST;
+        }
+        return FIELD_IGNORED;
+    }
+
+    private static boolean matches(byte[] name, int length, String expected) {
+        if (length != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,70 +1,269 @@
 package dev.replayshield.server;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpServer;
-
+import dev.replayshield.db.ResidentDb;
 import dev.replayshield.util.ErrorReporter;
-import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldConfig;
 
 public class HttpAuthServer {
 
-    private final HttpServer server;
+    // 동시 처리 한도 초과로 제한 시간 안에 입장하지 못한 요청 응답 (HTTP 503)
+    public static final String BUSY = "BUSY";
+    // 유휴 form 파서 보관 수 - 동시에 이보다 많이 쓰이면 초과분은 반납 시 버림
+    private static final int FORM_PARSER_POOL_SIZE = 64;
+
+    // HTTP 리스너 (TCP / Unix 소켓)
+    private final List<HttpTransport> transports = new ArrayList<>();
+    private final BinaryAuthListener binaryListener;
     private final PamAuthHandler authHandler;
+    private final ResidentDb residentDb;
+    private final AuthEngine authEngine;
+    private final AuthRateLimiter rateLimiter;
+    private final ServerMetrics metrics;
+    private final ExecutorService executor;
+    private final AuthAdmission admission;
+    private final int maxBodyBytes;
+    // 요청별 form 파서 재사용 (반납 시 0으로 지움)
+    private final FormParser.Pool formParsers;
+    // 실행 중 교체 가능한 한도 (설정 다시 읽기)
+    private volatile ReplayShieldConfig.Live live;
+    // 종료 결과 - 두 번째 종료 요청(shutdown hook + main finally)은 이 값을 그대로 반환
+    private ShutdownReport shutdownReport;
 
-    public HttpAuthServer(int port, byte[] key) throws IOException {
-        this.authHandler = new PamAuthHandler(key);
+    // 응답 상태 코드 + 본문 (리스너 종류와 무관)
+    record Response(int status, String body) {
+    }
 
-        InetSocketAddress addr = new InetSocketAddress("127.0.0.1", port);
-        this.server = HttpServer.create(addr, 0);
+    // 종료 단계별 소요 시간 (ms). abandoned: drain 제한 시간 안에 끝나지 않은 요청 수
+    public record ShutdownReport(long acceptStopMillis, long drainMillis, int abandoned, long flushMillis,
+            long totalMillis, boolean flushed) {
 
-        // '/auth'경로에 handleAuth()를 핸들러로 등록
-        this.server.createContext("/auth", this::handleAuth);
-        // 요청 발생시 새 스레드 풀 생성하게 설정
-        this.server.setExecutor(Executors.newCachedThreadPool());
+        @Override
+        public String toString() {
+            return String.format("stop accepting %d ms, drain %d ms (%d abandoned), flush %d ms%s, total %d ms",
+                    acceptStopMillis, drainMillis, abandoned, flushMillis, flushed ? "" : " (FAILED)", totalMillis);
+        }
     }
 
-    private void handleAuth(HttpExchange exchange) throws IOException {
-        try (exchange) {
-            // POST가 아니면 405
-            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-                exchange.sendResponseHeaders(405, -1);
-                return;
+    // tcpAddress가 null이면 TCP 리스너 없음, socketPath/binarySocketPath가 null이면 해당 리스너 없음
+    public HttpAuthServer(InetSocketAddress tcpAddress, Path socketPath, Path binarySocketPath, byte[] key,
+            AuthEngine.Kind engineKind, HttpTransport.Kind transportKind, int maxBodyBytes,
+            ReplayShieldConfig.Live live) throws IOException {
+        this.live = live;
+        this.maxBodyBytes = maxBodyBytes;
+        this.formParsers = new FormParser.Pool(maxBodyBytes, FORM_PARSER_POOL_SIZE);
+        this.rateLimiter = new AuthRateLimiter(live.userPerMinute(), live.userBurst(), live.sourcePerMinute(),
+                live.sourceBurst(), live.rateLimitMaxTrackedKeys());
+
+        // 시작 시 한 번만 복호화하고 연결 유지 (저널 재생 포함)
+        this.residentDb = ResidentDb.open(key, PamAuthHandler::replay);
+        this.authEngine = engineKind.create(residentDb);
+        this.metrics = new ServerMetrics(rateLimiter);
+        this.admission = new AuthAdmission(live.maxConcurrentAuth(), metrics);
+        this.authHandler = new PamAuthHandler(authEngine, rateLimiter, metrics);
+        // 요청마다 가상 스레드 - 실제 인증 동시 실행 수는 admission 세마포어로 제한
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        AuthEndpoint endpoint = new AuthEndpoint() {
+            @Override
+            public Response processAuth(InputStream body, long contentLength) {
+                return HttpAuthServer.this.processAuth(body, contentLength);
             }
 
-            // 실제 인증로직 실행
-            String result = authHandler.handleHttpPost(exchange);
+            @Override
+            public Response processAuth(ByteBuffer body) {
+                return HttpAuthServer.this.processAuth(body);
+            }
+
+            @Override
+            public int maxBodyBytes() {
+                return HttpAuthServer.this.maxBodyBytes;
+            }
+
+            @Override
+            public String renderMetrics() {
+                return HttpAuthServer.this.renderMetrics();
+            }
+        };
+        BinaryAuthListener binary = null;
+        try {
+            if (tcpAddress != null) {
+                transports.add(transportKind.bind(tcpAddress, endpoint, executor));
+            }
+            if (socketPath != null) {
+                transports.add(transportKind.bind(UnixDomainSocketAddress.of(socketPath), endpoint, executor));
+            }
+            if (binarySocketPath != null) {
+                binary = new BinaryAuthListener(binarySocketPath, this, executor);
+            }
+        } catch (IOException exception) {
+            for (HttpTransport transport : transports) {
+                transport.stop(0);
+            }
+            executor.shutdown();
+            authEngine.close();
+            residentDb.close();
+            throw exception;
+        }
+        this.binaryListener = binary;
+    }
+
+    // 인증 처리 본체 (리스너별 요청 형식 차이만 감춤)
+    @FunctionalInterface
+    interface AuthCall {
+        String run() throws SQLException;
+    }
+
+    // 본문 읽기 방식 (스트림 / 전송 버퍼)
+    @FunctionalInterface
+    private interface FormRead {
+        FormParser.Status parse(FormParser form) throws IOException;
+    }
+
+    // HTTP form 요청 1건 처리 - 본문은 입장 전에 한도 안에서 읽고 파싱 (느린 클라이언트가 처리 슬롯을 잡지 않도록)
+    Response processAuth(InputStream body, long contentLength) {
+        return processForm(form -> form.parse(body, contentLength));
+    }
+
+    // 전송 버퍼에 이미 있는 본문 처리 (NIO 전송)
+    Response processAuth(ByteBuffer body) {
+        return processForm(form -> form.parse(body));
+    }
 
-            byte[] body = result.getBytes();
-            exchange.sendResponseHeaders(200, body.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(body);
+    private Response processForm(FormRead read) {
+        if (!admission.enter()) {
+            return admission.reject();
+        }
+        FormParser form = formParsers.acquire();
+        try {
+            FormParser.Status status;
+            try {
+                status = read.parse(form);
+            } catch (IOException exception) {
+                status = FormParser.Status.MALFORMED;
+            }
+            if (status != FormParser.Status.OK) {
+                metrics.recordRequest();
+                metrics.recordBadRequest();
+                return status == FormParser.Status.TOO_LARGE
+                        ? new Response(413, PamAuthHandler.TOO_LARGE)
+                        : new Response(400, PamAuthHandler.BAD_REQUEST);
             }
-        } catch (ReplayShieldException exception) {
-            ErrorReporter.logError("HTTP", exception);
-            sendError(exchange);
-        } catch (Exception exception) {
-            ErrorReporter.logError("HTTP", exception);
-            sendError(exchange);
+            return admit(() -> authHandler.handleParsedForm(form));
+        } finally {
+            formParsers.release(form);
+            admission.leave();
         }
     }
 
-    private void sendError(HttpExchange exchange) throws IOException {
-        exchange.sendResponseHeaders(500, 0);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.flush();
+    // 바이너리 프로토콜 요청 1건 처리 - password 영역은 호출자가 지움
+    Response processCredentials(String username, byte[] password, int offset, int length, String rhost) {
+        if (!admission.enter()) {
+            return admission.reject();
         }
+        try {
+            return admit(() -> authHandler.handleCredentials(username, password, offset, length, rhost));
+        } finally {
+            admission.leave();
+        }
+    }
+
+    private Response admit(AuthCall call) {
+        return admission.admit(call, live.admissionTimeoutMillis());
+    }
+
+    String renderMetrics() {
+        return metrics.render();
+    }
+
+    // 설정 다시 읽기 결과 반영 - 각 한도를 개별로 교체하며 처리 중인 요청은 끊지 않음
+    public void applyLiveSettings(ReplayShieldConfig.Live next) {
+        rateLimiter.reconfigure(next.userPerMinute(), next.userBurst(), next.sourcePerMinute(), next.sourceBurst(),
+                next.rateLimitMaxTrackedKeys());
+        residentDb.reconfigureFlusher(next.flushMaxDelayMillis(), next.flushMaxDirtyMutations());
+        admission.resize(next.maxConcurrentAuth());
+        this.live = next;
     }
 
     public void start() {
-        this.server.start();
+        ReplayShieldConfig.Live current = live;
+        this.residentDb.startFlusher(current.flushMaxDelayMillis(), current.flushMaxDirtyMutations());
+        for (HttpTransport transport : transports) {
+            transport.start();
+        }
+        if (binaryListener != null) {
+            this.binaryListener.start();
+        }
     }
 
     public void stop(int delaySeconds) {
-        this.server.stop(delaySeconds);
+        shutdown(TimeUnit.SECONDS.toMillis(delaySeconds));
+    }
+
+    // 설정의 drain 제한 시간으로 종료
+    public ShutdownReport shutdown() {
+        return shutdown(live.drainTimeoutMillis());
+    }
+
+    /*
+     * 종료 순서: 새 연결 차단 → 처리 중인 인증 drain(제한 시간) → 남은 요청 판정 중단(503) → 연결 정리
+     * → 엔진 대기분 반영 + 암호화 스냅샷 저장(fsync) → 상주 DB 닫기.
+     * 키 삭제(AdminKeyHolder.clear)는 저장이 끝난 뒤 호출자가 한다.
+     */
+    public synchronized ShutdownReport shutdown(long drainTimeoutMillis) {
+        if (shutdownReport != null) {
+            return shutdownReport;
+        }
+        long started = System.nanoTime();
+        admission.startDraining();
+        for (HttpTransport transport : transports) {
+            transport.stopAccepting();
+        }
+        if (binaryListener != null) {
+            this.binaryListener.close();
+        }
+        long acceptStopped = System.nanoTime();
+
+        int abandoned = admission.awaitDrain(drainTimeoutMillis);
+        long drained = System.nanoTime();
+        // 제한 시간 안에 끝나지 않은 요청은 엔진/DB를 닫기 전에 판정에서 빼고 503 BUSY로 끝나게 함
+        admission.close();
+
+        // 남은 keep-alive 연결 정리 (JDK HttpServer는 남은 교환을 최대 1초 더 기다림)
+        for (HttpTransport transport : transports) {
+            transport.stop(abandoned > 0 ? 0 : 1);
+        }
+        this.executor.shutdown();
+        long flushStarted = System.nanoTime();
+        boolean flushed = true;
+        try {
+            // 대기 중인 인증 처리 후 남은 변경분 저장, 상주 DB 정리
+            this.authEngine.close();
+            this.residentDb.close();
+        } catch (RuntimeException exception) {
+            flushed = false;
+            ErrorReporter.logError("Shutdown", exception);
+        }
+        long finished = System.nanoTime();
+
+        shutdownReport = new ShutdownReport(millis(acceptStopped - started), millis(drained - acceptStopped),
+                abandoned, millis(finished - flushStarted), millis(finished - started), flushed);
+        return shutdownReport;
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
     }
 }
@@ -0,0 +1,62 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.util.concurrent.ExecutorService;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * /auth, /metrics HTTP 전송 계층.
+ * 요청 해석/연결 관리만 다르고 처리는 모두 {@link AuthEndpoint}로 넘긴다.
+ */
+public interface HttpTransport {
+
+    void start();
+
+    // 새 연결만 받지 않음 - 이미 열린 연결의 요청은 계속 처리 (종료 시 drain 단계 전)
+    default void stopAccepting() {
+    }
+
+    // delaySeconds: 처리 중인 요청을 기다릴 최대 시간 (구현이 지원하는 경우)
+    void stop(int delaySeconds);
+
+    enum Kind {
+        // JDK HttpServer (TCP) + 연결당 가상 스레드 리스너 (Unix 소켓)
+        JDK("jdk"),
+        // 단일 selector 스레드 + 재사용 direct buffer, 판정만 executor에서 실행
+        NIO("nio");
+
+        private final String configName;
+
+        Kind(String configName) {
+            this.configName = configName;
+        }
+
+        public String configName() {
+            return configName;
+        }
+
+        HttpTransport bind(SocketAddress address, AuthEndpoint endpoint, ExecutorService executor)
+                throws IOException {
+            return switch (this) {
+                case JDK -> address instanceof UnixDomainSocketAddress unix
+                        ? new UnixSocketListener(unix.getPath(), endpoint, executor)
+                        : new JdkHttpTransport((InetSocketAddress) address, endpoint, executor);
+                case NIO -> new NioHttpTransport(address, endpoint, executor);
+            };
+        }
+
+        public static Kind fromName(String name) {
+            for (Kind kind : values()) {
+                if (kind.configName.equalsIgnoreCase(name)) {
+                    return kind;
+                }
+            }
+            throw new ReplayShieldException(ErrorType.CONFIGURATION, "Unknown HTTP transport: " + name);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package dev.replayshield.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * 자체 HTTP/1.1 리스너 공통 요청 해석 / 응답 직렬화.
+ */
+final class HttpWire {
+
+    // 요청 줄 + 헤더 최대 크기
+    static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    static final String TEXT = "text/plain";
+    static final String METRICS = "text/plain; version=0.0.4";
+
+    private HttpWire() {
+    }
+
+    // 요청 줄 + 헤더 해석 결과
+    record Head(String method, String path, boolean keepAlive, long contentLength) {
+    }
+
+    // CRLF로 끝나는 헤더 블록 해석. 요청 줄이 잘못되면 null
+    static Head parseHead(String head) {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (head.isEmpty() || requestLine.length != 3) {
+            return null;
+        }
+        String path = requestLine[1];
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        // HTTP/1.1은 기본 유지, HTTP/1.0은 keep-alive 명시 시에만
+        String connection = header(lines, "connection");
+        boolean keepAlive = "HTTP/1.1".equals(requestLine[2])
+                ? !"close".equalsIgnoreCase(connection)
+                : "keep-alive".equalsIgnoreCase(connection);
+        return new Head(requestLine[0], path, keepAlive, contentLength(lines));
+    }
+
+    /*
+     * 전송 버퍼의 [0, headEnd) 헤더 블록을 복사 없이 해석 (NIO 전송용).
+     * method/path는 이 리스너가 다루는 값(POST, GET, /auth, /metrics)만 상수로 돌려주고 나머지는 빈 문자열.
+     * 요청 줄이 잘못되면 null
+     */
+    static Head parseHead(ByteBuffer buf, int headEnd) {
+        int lineEnd = indexOfCrlf(buf, 0, headEnd);
+        int firstSpace = indexOf(buf, (byte) ' ', 0, lineEnd);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(buf, (byte) ' ', firstSpace + 1, lineEnd);
+        if (lineEnd <= 0 || firstSpace <= 0 || secondSpace < 0
+                || indexOf(buf, (byte) ' ', secondSpace + 1, lineEnd) >= 0) {
+            return null;
+        }
+        String method = equalsIgnoreCase(buf, 0, firstSpace, "POST") ? "POST"
+                : equalsIgnoreCase(buf, 0, firstSpace, "GET") ? "GET" : "";
+        int query = indexOf(buf, (byte) '?', firstSpace + 1, secondSpace);
+        int pathEnd = query >= 0 ? query : secondSpace;
+        String path = matches(buf, firstSpace + 1, pathEnd, "/auth") ? "/auth"
+                : matches(buf, firstSpace + 1, pathEnd, "/metrics") ? "/metrics" : "";
+        boolean http11 = matches(buf, secondSpace + 1, lineEnd, "HTTP/1.1");
+
+        // 헤더 줄 순회 - 같은 이름이 여러 번 오면 첫 값 사용
+        int connectionStart = -1;
+        int connectionEnd = -1;
+        long contentLength = -1;
+        boolean sawContentLength = false;
+        int lineStart = lineEnd + 2;
+        while (lineStart < headEnd - 2) {
+            int end = indexOfCrlf(buf, lineStart, headEnd);
+            int colon = indexOf(buf, (byte) ':', lineStart, end);
+            if (colon > lineStart) {
+                int nameEnd = trimEnd(buf, lineStart, colon);
+                int valueStart = trimStart(buf, colon + 1, end);
+                int valueEnd = trimEnd(buf, valueStart, end);
+                if (!sawContentLength && equalsIgnoreCase(buf, lineStart, nameEnd, "content-length")) {
+                    sawContentLength = true;
+                    contentLength = parseLength(buf, valueStart, valueEnd);
+                } else if (connectionStart < 0 && equalsIgnoreCase(buf, lineStart, nameEnd, "connection")) {
+                    connectionStart = valueStart;
+                    connectionEnd = valueEnd;
+                }
+            }
+            lineStart = end + 2;
+        }
+        // HTTP/1.1은 기본 유지, HTTP/1.0은 keep-alive 명시 시에만
+        boolean keepAlive = http11
+                ? connectionStart < 0 || !equalsIgnoreCase(buf, connectionStart, connectionEnd, "close")
+                : connectionStart >= 0 && equalsIgnoreCase(buf, connectionStart, connectionEnd, "keep-alive");
+        return new Head(method, path, keepAlive, contentLength);
+    }
+
+    // 본문을 끝까지 읽지 않았을 수 있는 응답 - 다음 요청 경계를 알 수 없어 연결 종료
+    // (503: 종료 drain 중에는 본문을 읽기 전에 거절)
+    static boolean leavesUnreadBody(int status) {
+        return status == 400 || status == 404 || status == 405 || status == 411 || status == 413 || status == 503;
+    }
+
+    static byte[] response(HttpAuthServer.Response response, String contentType, boolean keepAlive) {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("HTTP/1.1 " + response.status() + " " + reason(response.status()) + "\r\n"
+                + "Content-Type: " + contentType + "\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] out = new byte[head.length + body.length];
+        System.arraycopy(head, 0, out, 0, head.length);
+        System.arraycopy(body, 0, out, head.length, body.length);
+        return out;
+    }
+
+    // 헤더 값 (없으면 null). name은 소문자
+    private static String header(String[] lines, String name) {
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && name.equals(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT))) {
+                return lines[i].substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    // Content-Length 헤더 값 (없거나 잘못되면 -1)
+    private static long contentLength(String[] lines) {
+        String value = header(lines, "content-length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    private static int indexOf(ByteBuffer buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // CR LF 위치, 없으면 to
+    private static int indexOfCrlf(ByteBuffer buf, int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (buf.get(i) == '\r' && buf.get(i + 1) == '\n') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static int trimStart(ByteBuffer buf, int from, int to) {
+        while (from < to && (buf.get(from) == ' ' || buf.get(from) == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int from, int to) {
+        while (to > from && (buf.get(to - 1) == ' ' || buf.get(to - 1) == '\t')) {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean matches(ByteBuffer buf, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (buf.get(from + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // expected는 ASCII 소문자/대문자 그대로 - 대소문자 무시 비교
+    private static boolean equalsIgnoreCase(ByteBuffer buf, int from, int to, String expected) {
+        if (to - from != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            int b = buf.get(from + i);
+            if (Character.toLowerCase(b) != Character.toLowerCase(expected.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 10진수 길이 (없거나 잘못되면 -1)
+    private static long parseLength(ByteBuffer buf, int from, int to) {
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buf.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static String reason(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 400 -> "Bad Request";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 411 -> "Length Required";
+            case 413 -> "Payload Too Large";
+            case 429 -> "Too Many Requests";
+            case 503 -> "Service Unavailable";
+            default -> "Internal Server Error";
+        };
+    }
+}
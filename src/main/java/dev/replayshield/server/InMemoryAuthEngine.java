@@ -0,0 +1,287 @@
+package dev.replayshield.server;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.server.PamAuthHandler.AuthOutcome;
+import dev.replayshield.util.ErrorReporter;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 사용자별 패스워드 풀을 메모리에 들고 SQL 없이 판정하는 엔진.
+ * 사용자마다 digest → 풀 항목 맵과, 최근 사용된 block_count개 항목의 recency ring(원형 배열)을 유지한다.
+ * 판정 결과 변경은 저널에 먼저 기록(fsync)한 뒤 응답하고,
+ * SQLite에는 백그라운드 스레드가 같은 판정 로직으로 나중에 반영한다.
+ */
+final class InMemoryAuthEngine implements AuthEngine, ResidentDb.Mirror {
+
+    // SQL 반영 스레드가 깨어나지 않아도 최대 이 간격으로 반영
+    private static final long APPLY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ResidentDb residentDb;
+    private final ConcurrentLinkedQueue<ResidentDb.Mutation> pending = new ConcurrentLinkedQueue<>();
+    private final Thread applier;
+    // 배타 잠금 아래에서만 교체, 사용자 상태는 해당 사용자 잠금 아래에서만 변경
+    private volatile Map<String, UserPool> users = Map.of();
+    private volatile boolean closed;
+
+    InMemoryAuthEngine(ResidentDb residentDb) {
+        this.residentDb = residentDb;
+        try {
+            residentDb.attachMirror(this);
+        } catch (SQLException exception) {
+            throw new ReplayShieldException(ErrorType.DATABASE_ACCESS, "Failed to load in-memory auth state",
+                    exception);
+        }
+        this.applier = new Thread(this::runApplier, "replayshield-auth-applier");
+        this.applier.setDaemon(true);
+        this.applier.start();
+    }
+
+    @Override
+    public String authenticate(String username, byte[] pwHash) throws SQLException {
+        ByteBuffer digest = ByteBuffer.wrap(pwHash);
+        long now = System.currentTimeMillis();
+        // 공유 잠금 + 사용자 잠금 - 같은 사용자 판정만 직렬화, conn은 사용하지 않음
+        AuthOutcome outcome = residentDb.execute(username, conn -> {
+            UserPool pool = users.get(username);
+            AuthOutcome result = pool == null ? AuthOutcome.UNKNOWN : pool.use(digest, now);
+            if (result.recorded()) {
+                // 저널 기록과 대기열 추가를 같은 공유 잠금 안에서 - 스냅샷이 사이에 끼지 않음
+                long stamp = pool.lastStamp();
+                residentDb.recordMutation(username, pwHash, stamp);
+                pending.add(new ResidentDb.Mutation(username, pwHash, stamp));
+            }
+            return result;
+        });
+        if (outcome.recorded()) {
+            LockSupport.unpark(applier);
+        }
+        return outcome.response();
+    }
+
+    @Override
+    public void flushPending(Connection conn) throws SQLException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // 커밋 전에는 꺼내지 않음 - 롤백되면 다음 반영 때 같은 순서로 다시 시도
+            int applied = 0;
+            for (ResidentDb.Mutation mutation : pending) {
+                PamAuthHandler.recordAttempt(conn, mutation.username(), mutation.pwHash(), mutation.timestamp());
+                applied++;
+            }
+            conn.commit();
+            // 배타 잠금 아래라 그 사이 추가된 항목 없음 - 반영한 만큼만 제거
+            for (int i = 0; i < applied; i++) {
+                pending.poll();
+            }
+        } catch (SQLException exception) {
+            conn.rollback();
+            throw exception;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+    }
+
+    @Override
+    public void rebuild(Connection conn) throws SQLException {
+        pending.clear();
+        Map<String, UserPool> loaded = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT username, block_count FROM user_config");
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                loaded.put(rs.getString(1), new UserPool(rs.getInt(2)));
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT username, id, pw_hash, blocked, last_use FROM password_pool");
+                ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                UserPool pool = loaded.get(rs.getString(1));
+                if (pool == null) {
+                    continue;
+                }
+                PoolEntry entry = new PoolEntry(rs.getInt(2), rs.getLong(5));
+                entry.blocked = rs.getInt(4) == 1;
+                pool.byDigest.put(ByteBuffer.wrap(rs.getBytes(3)), entry);
+            }
+        }
+        for (UserPool pool : loaded.values()) {
+            pool.rebuildRing();
+        }
+        users = loaded;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(applier);
+        try {
+            applier.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        // 남은 변경은 ResidentDb 스냅샷 직전에 flushPending으로 반영됨
+    }
+
+    // 쌓인 변경을 주기적으로 SQL에 반영 - 스냅샷 시 반영할 양을 작게 유지
+    private void runApplier() {
+        while (!closed) {
+            if (pending.isEmpty()) {
+                LockSupport.parkNanos(this, APPLY_INTERVAL_NANOS);
+                continue;
+            }
+            try {
+                residentDb.execute(conn -> null); // 배타 작업 직전에 flushPending 실행됨
+            } catch (SQLException | RuntimeException exception) {
+                ErrorReporter.logError("InMemoryAuthEngine", exception);
+                LockSupport.parkNanos(this, APPLY_INTERVAL_NANOS);
+            }
+        }
+    }
+
+    private static final Comparator<PoolEntry> RECENCY = Comparator
+            .comparingLong((PoolEntry entry) -> entry.lastUse)
+            .thenComparingInt(entry -> entry.id);
+
+    // 한 사용자의 풀과 recency ring (blocked 항목만, 최대 block_count개)
+    private static final class UserPool {
+        private final int blockCount;
+        private final Map<ByteBuffer, PoolEntry> byDigest = new HashMap<>();
+        // blocked 항목을 사용 순서대로 담은 원형 배열 (head = 가장 오래된 칸).
+        // 최근 사용으로 옮긴 항목의 예전 칸은 null로 비우고 head가 지나갈 때 건너뛴다.
+        // 빈 칸 때문에 배열이 차면 한 번 압축 - 연산당 분할 상환 O(1)
+        private PoolEntry[] ring;
+        private int head;
+        // head부터 차지한 칸 수 (빈 칸 포함) / 그중 blocked 항목 수
+        private int span;
+        private int size;
+        // 이 사용자에게 마지막으로 준 사용 시각
+        private long lastStamp;
+
+        UserPool(int blockCount) {
+            this.blockCount = Math.max(blockCount, 0);
+            this.ring = new PoolEntry[2 * Math.max(this.blockCount, 1)];
+        }
+
+        AuthOutcome use(ByteBuffer digest, long now) {
+            PoolEntry entry = byDigest.get(digest);
+            if (entry == null) {
+                return AuthOutcome.UNKNOWN;
+            }
+            // 사용자별로 항상 증가하는 시각 - ring 순서가 SQL의 (last_use, id) 순서와 같아짐
+            // (같은 밀리초의 연속 사용, 시계 역행, 잠금 획득 순서가 now 순서와 다른 경우)
+            lastStamp = Math.max(now, lastStamp + 1);
+            entry.lastUse = lastStamp;
+            if (entry.blocked) {
+                // window 안에서 최신 위치로 이동만
+                unlink(entry);
+                append(entry);
+                return AuthOutcome.BLOCKED;
+            }
+            entry.blocked = true;
+            if (size > 0 && size >= blockCount) {
+                // SQL 경로와 같은 기준 (last_use, id)으로 가장 오래된 항목 해제
+                PoolEntry oldest = ring[head];
+                unlink(oldest);
+                oldest.blocked = false;
+            }
+            append(entry);
+            return AuthOutcome.PASS;
+        }
+
+        // 마지막 use()에서 기록한 사용 시각 (저널/SQL 반영에 같은 값을 사용)
+        long lastStamp() {
+            return lastStamp;
+        }
+
+        void rebuildRing() {
+            List<PoolEntry> blocked = new ArrayList<>();
+            for (PoolEntry entry : byDigest.values()) {
+                if (entry.blocked) {
+                    blocked.add(entry);
+                }
+                lastStamp = Math.max(lastStamp, entry.lastUse);
+            }
+            blocked.sort(RECENCY);
+            ring = new PoolEntry[2 * Math.max(Math.max(blockCount, blocked.size()), 1)];
+            head = 0;
+            span = 0;
+            size = 0;
+            for (PoolEntry entry : blocked) {
+                append(entry);
+            }
+        }
+
+        private void append(PoolEntry entry) {
+            if (span == ring.length) {
+                compact();
+            }
+            int slot = (head + span) % ring.length;
+            ring[slot] = entry;
+            entry.slot = slot;
+            span++;
+            size++;
+        }
+
+        private void unlink(PoolEntry entry) {
+            ring[entry.slot] = null;
+            entry.slot = -1;
+            size--;
+            // head가 항상 살아 있는 항목(또는 빈 ring)을 가리키도록
+            while (span > 0 && ring[head] == null) {
+                head = (head + 1) % ring.length;
+                span--;
+            }
+        }
+
+        // 빈 칸을 제거해 앞으로 모음 (살아 있는 항목이 배열을 다 채웠으면 두 배로)
+        private void compact() {
+            PoolEntry[] packed = new PoolEntry[size == ring.length ? ring.length * 2 : ring.length];
+            int count = 0;
+            for (int i = 0; i < span; i++) {
+                PoolEntry entry = ring[(head + i) % ring.length];
+                if (entry != null) {
+                    entry.slot = count;
+                    packed[count++] = entry;
+                }
+            }
+            ring = packed;
+            head = 0;
+            span = count;
+        }
+    }
+
+    private static final class PoolEntry {
+        private final int id;
+        private long lastUse;
+        private boolean blocked;
+        // UserPool.ring 안의 칸 (없으면 -1)
+        private int slot = -1;
+
+        PoolEntry(int id, long lastUse) {
+            this.id = id;
+            this.lastUse = lastUse;
+        }
+    }
+}
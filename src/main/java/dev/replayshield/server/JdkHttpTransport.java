@@ -0,0 +1,104 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * JDK {@link HttpServer} 기반 TCP 전송 (keep-alive는 HttpServer 기본 동작).
+ */
+final class JdkHttpTransport implements HttpTransport {
+
+    private final HttpServer server;
+    private final AuthEndpoint endpoint;
+
+    JdkHttpTransport(InetSocketAddress address, AuthEndpoint endpoint, ExecutorService executor) throws IOException {
+        this.endpoint = endpoint;
+        this.server = HttpServer.create(address, 0);
+        // '/auth'경로에 handleAuth()를 핸들러로 등록
+        server.createContext("/auth", this::handleAuth);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+    }
+
+    private void handleAuth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // POST가 아니면 405
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            // 선언된 길이가 한도를 넘으면 본문을 읽지 않고 413
+            long contentLength = contentLength(exchange);
+            if (contentLength > endpoint.maxBodyBytes()) {
+                send(exchange, new HttpAuthServer.Response(413, PamAuthHandler.TOO_LARGE), HttpWire.TEXT);
+                return;
+            }
+
+            // 길이 없는(chunked) 본문도 파서가 한도까지만 읽음
+            HttpAuthServer.Response response;
+            try (InputStream in = exchange.getRequestBody()) {
+                response = endpoint.processAuth(in, contentLength);
+            }
+            send(exchange, response, HttpWire.TEXT);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // GET이 아니면 405
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            send(exchange, new HttpAuthServer.Response(200, endpoint.renderMetrics()), HttpWire.METRICS);
+        }
+    }
+
+    // Content-Length 헤더 값 (없거나 잘못되면 -1)
+    private static long contentLength(HttpExchange exchange) {
+        String value = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException exception) {
+            return -1;
+        }
+    }
+
+    private static void send(HttpExchange exchange, HttpAuthServer.Response response, String contentType)
+            throws IOException {
+        byte[] body = response.body().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(response.status(), body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    // 실제 bind 주소 (포트 0으로 연 경우 확인용)
+    InetSocketAddress localAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+    }
+}
@@ -0,0 +1,293 @@
+package dev.replayshield.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 인증 소켓에 연결 하나를 유지하며 /auth 요청을 보내는 HTTP/1.1 클라이언트 (시험/부하 도구용).
+ * {@link #send}를 여러 번 호출한 뒤 {@link #flush}하면 요청이 파이프라인으로 전송되고,
+ * 응답은 보낸 순서대로 {@link #receive}로 읽는다.
+ */
+public final class KeepAliveAuthClient implements AutoCloseable {
+
+    private static final int IO_BUFFER_BYTES = 8 * 1024;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+    // 요청 본문 조립 버퍼 - 요청마다 재사용하고 전송 후 지움
+    private byte[] body = new byte[512];
+
+    public KeepAliveAuthClient(Path socket) {
+        this(UnixDomainSocketAddress.of(socket));
+    }
+
+    // Unix 소켓 또는 TCP 주소
+    public KeepAliveAuthClient(SocketAddress address) {
+        try {
+            this.channel = SocketChannel.open(address);
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.HTTP_SERVER, "Failed to reach auth server " + address,
+                    exception);
+        }
+        // Channels.newInputStream/newOutputStream은 blocking 채널에서 읽기와 쓰기가 같은 잠금을 써서
+        // 응답 대기 중에 다음 요청을 보낼 수 없으므로 채널에 직접 연결
+        this.in = new BufferedInputStream(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        }, IO_BUFFER_BYTES);
+        this.out = new BufferedOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+        }, IO_BUFFER_BYTES);
+    }
+
+    // 요청 1건 전송 후 응답 대기
+    public String authenticate(String username, byte[] password, int offset, int length, String rhost)
+            throws IOException {
+        send(username, password, offset, length, rhost);
+        flush();
+        String response = receive();
+        if (response == null) {
+            throw new IOException("Connection closed by server");
+        }
+        return response;
+    }
+
+    // 요청 1건을 버퍼에 기록 (flush 전까지 전송되지 않을 수 있음)
+    public void send(String username, byte[] password, int offset, int length, String rhost) throws IOException {
+        int n = 0;
+        try {
+            n = appendField(n, "username", username.getBytes(StandardCharsets.UTF_8), 0, -1);
+            n = appendField(n, "&password", password, offset, length);
+            if (rhost != null && !rhost.isEmpty()) {
+                n = appendField(n, "&rhost", rhost.getBytes(StandardCharsets.US_ASCII), 0, -1);
+            }
+            String head = "POST /auth HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Content-Type: application/x-www-form-urlencoded\r\n"
+                    + "Content-Length: " + n + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body, 0, n);
+        } finally {
+            Arrays.fill(body, 0, n, (byte) 0);
+        }
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    // 이후 요청 없음 - 서버는 남은 응답을 보낸 뒤 연결을 닫음
+    public void finishSending() throws IOException {
+        out.flush();
+        channel.shutdownOutput();
+    }
+
+    // 다음 응답 본문 (PASS/FAIL/...). 서버가 연결을 닫았으면 null
+    public String receive() throws IOException {
+        String head = readHead();
+        if (head == null) {
+            return null;
+        }
+        int length = 0;
+        for (String line : head.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && "content-length".equals(line.substring(0, colon).trim().toLowerCase(Locale.ROOT))) {
+                length = Integer.parseInt(line.substring(colon + 1).trim());
+            }
+        }
+        byte[] response = in.readNBytes(length);
+        if (response.length != length) {
+            throw new IOException("Truncated response");
+        }
+        String text = new String(response, StandardCharsets.UTF_8);
+        if (!text.isEmpty()) {
+            return text;
+        }
+        // 본문 없는 오류 응답은 상태 줄로 표시
+        int lineEnd = head.indexOf("\r\n");
+        return lineEnd < 0 ? head : head.substring(0, lineEnd);
+    }
+
+    /**
+     * stdin의 "username\tpassword[\trhost]" 줄마다 요청을 보내고 응답을 한 줄씩 출력한다 (형식이 틀린 줄은 무시).
+     * 요청은 입력이 밀려 있는 동안 파이프라인으로 묶어 보내고, 응답은 별도 스레드에서 순서대로 읽는다.
+     * 반환값은 처리한 응답 수.
+     */
+    public static long pipe(Path socket, InputStream input, PrintStream output) throws IOException {
+        try (KeepAliveAuthClient client = new KeepAliveAuthClient(socket)) {
+            AtomicLong received = new AtomicLong();
+            AtomicReference<IOException> readFailure = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    String response;
+                    while ((response = client.receive()) != null) {
+                        output.println(response);
+                        received.incrementAndGet();
+                    }
+                } catch (IOException exception) {
+                    readFailure.set(exception);
+                }
+                output.flush();
+            }, "replayshield-pipe-reader");
+            reader.start();
+
+            InputStream in = input instanceof BufferedInputStream ? input
+                    : new BufferedInputStream(input, IO_BUFFER_BYTES);
+            byte[] line = new byte[256];
+            try {
+                while (true) {
+                    int n = 0;
+                    int b;
+                    while ((b = in.read()) >= 0 && b != '\n') {
+                        if (n == line.length) {
+                            byte[] larger = Arrays.copyOf(line, n * 2);
+                            Arrays.fill(line, (byte) 0);
+                            line = larger;
+                        }
+                        line[n++] = (byte) b;
+                    }
+                    if (n > 0 && line[n - 1] == '\r') {
+                        n--;
+                    }
+                    if (n > 0) {
+                        sendLine(client, line, n);
+                        Arrays.fill(line, 0, n, (byte) 0);
+                    }
+                    if (b < 0) {
+                        break;
+                    }
+                    // 더 읽을 입력이 없을 때만 전송
+                    if (in.available() == 0) {
+                        client.flush();
+                    }
+                }
+                client.finishSending();
+                reader.join();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            } finally {
+                Arrays.fill(line, (byte) 0);
+            }
+            if (readFailure.get() != null) {
+                throw readFailure.get();
+            }
+            return received.get();
+        }
+    }
+
+    // 한 줄을 탭으로 나눠 요청 1건 전송. 형식이 맞지 않으면 건너뜀 (응답 줄도 없음)
+    private static void sendLine(KeepAliveAuthClient client, byte[] line, int length) throws IOException {
+        int firstTab = indexOf(line, 0, length);
+        if (firstTab <= 0) {
+            return;
+        }
+        int secondTab = indexOf(line, firstTab + 1, length);
+        int passwordEnd = secondTab < 0 ? length : secondTab;
+        String username = new String(line, 0, firstTab, StandardCharsets.UTF_8);
+        String rhost = secondTab < 0 ? null
+                : new String(line, secondTab + 1, length - secondTab - 1, StandardCharsets.US_ASCII);
+        client.send(username, line, firstTab + 1, passwordEnd - firstTab - 1, rhost);
+    }
+
+    private static int indexOf(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == '\t') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String readHead() throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(128);
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                if (head.size() == 0) {
+                    return null;
+                }
+                throw new IOException("Truncated response head");
+            }
+            head.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return head.toString(StandardCharsets.US_ASCII);
+    }
+
+    // name=value (value는 percent-encode). length < 0이면 value 전체
+    private int appendField(int n, String name, byte[] value, int offset, int length) {
+        int valueLength = length < 0 ? value.length : length;
+        ensureCapacity(n + name.length() + 1 + valueLength * 3);
+        for (int i = 0; i < name.length(); i++) {
+            body[n++] = (byte) name.charAt(i);
+        }
+        body[n++] = '=';
+        for (int i = offset; i < offset + valueLength; i++) {
+            int b = value[i] & 0xFF;
+            if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9')
+                    || b == '-' || b == '.' || b == '_' || b == '~') {
+                body[n++] = (byte) b;
+            } else {
+                body[n++] = '%';
+                body[n++] = HEX[b >> 4];
+                body[n++] = HEX[b & 0x0F];
+            }
+        }
+        return n;
+    }
+
+    private void ensureCapacity(int required) {
+        if (body.length >= required) {
+            return;
+        }
+        byte[] larger = Arrays.copyOf(body, Math.max(required, body.length * 2));
+        Arrays.fill(body, (byte) 0);
+        body = larger;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Arrays.fill(body, (byte) 0);
+        channel.close();
+    }
+}
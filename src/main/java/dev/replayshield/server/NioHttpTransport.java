@@ -0,0 +1,454 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * selector 스레드 하나로 연결을 관리하는 최소 HTTP/1.1 전송 (POST /auth, GET /metrics만 처리).
+ * 요청 버퍼는 재사용하는 direct buffer이고 요청 처리 중이 아닌 유휴 연결은 버퍼를 반납한다.
+ * 헤더와 본문은 이 버퍼에서 복사 없이 바로 해석한다.
+ * 판정만 executor에서 실행하며, 한 연결의 요청은 응답을 보낸 뒤 다음 요청을 읽으므로 순서가 유지된다.
+ */
+final class NioHttpTransport implements HttpTransport {
+
+    private static final int MAX_POOLED_BUFFERS = 256;
+    // 이 시간 동안 아무것도 받지 못한 연결은 닫음 (읽을 때마다 갱신)
+    private static final long IDLE_TIMEOUT_MILLIS = 10_000;
+    // 계속 조금씩 보내더라도 요청 하나를 다 받기까지의 최대 시간 (slowloris 방지)
+    private static final long REQUEST_TIMEOUT_MILLIS = 30_000;
+    private static final long SELECT_TIMEOUT_MILLIS = 1_000;
+
+    private final Path socketPath;
+    private final AuthEndpoint endpoint;
+    private final ExecutorService executor;
+    // 헤더 + 본문 최대 크기를 한 번에 담는 크기
+    private final int bufferBytes;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    // 반납된 요청 버퍼 (반납 시 0으로 지움)
+    private final Queue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+    // 응답이 준비된 연결 - selector 스레드가 쓰기 대기로 전환
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private volatile boolean accepting = true;
+    private Thread selectorThread;
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        // 쓰기 모드 (position = 읽은 바이트 수), 유휴 시 null
+        private ByteBuffer in;
+        private ByteBuffer out;
+        private boolean keepAlive;
+        private boolean processing;
+        // 처리 중인 요청의 헤더 + 본문 길이 - 응답 준비 후 버퍼에서 제거
+        private int pendingConsume;
+        private long lastActivity;
+        // 받는 중인 요청의 첫 바이트 도착 시각, 없으면 0
+        private long requestStarted;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    NioHttpTransport(SocketAddress address, AuthEndpoint endpoint, ExecutorService executor) throws IOException {
+        this.endpoint = endpoint;
+        this.executor = executor;
+        this.bufferBytes = HttpWire.MAX_HEADER_BYTES + endpoint.maxBodyBytes();
+        if (address instanceof UnixDomainSocketAddress unix) {
+            this.socketPath = unix.getPath();
+            this.serverChannel = UnixSockets.bind(socketPath);
+        } else {
+            this.socketPath = null;
+            this.serverChannel = ServerSocketChannel.open();
+            try {
+                serverChannel.bind(address);
+            } catch (IOException exception) {
+                serverChannel.close();
+                throw exception;
+            }
+        }
+        try {
+            serverChannel.configureBlocking(false);
+            this.selector = Selector.open();
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException exception) {
+            serverChannel.close();
+            if (socketPath != null) {
+                UnixSockets.unlink(socketPath, "NioHttpTransport");
+            }
+            throw exception;
+        }
+    }
+
+    // 실제 bind 주소 (포트 0으로 연 경우 확인용)
+    SocketAddress localAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "replayshield-nio-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    private void selectLoop() {
+        long lastSweep = System.currentTimeMillis();
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                if (!accepting && serverChannel.isOpen()) {
+                    closeServerChannel();
+                }
+                Connection done;
+                while ((done = completed.poll()) != null) {
+                    finishProcessing(done);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key);
+                }
+                selector.selectedKeys().clear();
+
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SELECT_TIMEOUT_MILLIS) {
+                    sweepIdle(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException exception) {
+            ErrorReporter.logError("NioHttpTransport", exception);
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection conn = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                read(conn);
+            } else if (key.isWritable()) {
+                write(conn);
+            }
+        } catch (IOException exception) {
+            // 상대가 연결을 끊은 경우 포함
+            close(conn);
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            Connection conn = new Connection(channel);
+            conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        } catch (IOException exception) {
+            ErrorReporter.logError("NioHttpTransport", exception);
+        }
+    }
+
+    private void read(Connection conn) throws IOException {
+        if (conn.in == null) {
+            conn.in = acquireBuffer();
+        }
+        int n = conn.channel.read(conn.in);
+        if (n < 0) {
+            close(conn);
+            return;
+        }
+        if (n > 0) {
+            long now = System.currentTimeMillis();
+            conn.lastActivity = now;
+            if (conn.requestStarted == 0) {
+                conn.requestStarted = now;
+            }
+        }
+        dispatch(conn);
+    }
+
+    // 판정이 끝난 연결 - 처리한 요청을 버퍼에서 지우고 쓰기 대기로 전환 (selector 스레드)
+    private void finishProcessing(Connection conn) {
+        conn.processing = false;
+        if (!conn.key.isValid()) {
+            // 처리 중에 닫힌 연결 - close()가 반납하지 않은 버퍼를 여기서 반납
+            if (conn.in != null) {
+                releaseBuffer(conn.in);
+                conn.in = null;
+            }
+            return;
+        }
+        consume(conn.in, conn.pendingConsume);
+        conn.pendingConsume = 0;
+        conn.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    private void write(Connection conn) throws IOException {
+        conn.channel.write(conn.out);
+        if (conn.out.hasRemaining()) {
+            return;
+        }
+        conn.out = null;
+        conn.lastActivity = System.currentTimeMillis();
+        if (!conn.keepAlive) {
+            close(conn);
+            return;
+        }
+        conn.key.interestOps(SelectionKey.OP_READ);
+        // 이미 받은 다음 요청(pipelining)이 있으면 바로 처리
+        dispatch(conn);
+    }
+
+    // 버퍼에 완성된 요청이 있으면 처리 시작, 아니면 더 읽음
+    private void dispatch(Connection conn) {
+        ByteBuffer in = conn.in;
+        if (in == null) {
+            return;
+        }
+        // 요청 사이의 빈 줄 무시
+        int skip = 0;
+        while (skip < in.position() && (in.get(skip) == '\r' || in.get(skip) == '\n')) {
+            skip++;
+        }
+        consume(in, skip);
+        if (in.position() == 0) {
+            // 유휴 연결은 버퍼 반납
+            releaseBuffer(in);
+            conn.in = null;
+            conn.requestStarted = 0;
+            return;
+        }
+        if (conn.requestStarted == 0) {
+            // 파이프라인으로 이미 받아 둔 다음 요청
+            conn.requestStarted = System.currentTimeMillis();
+        }
+
+        int headEnd = headEnd(in);
+        if (headEnd < 0) {
+            if (in.position() >= HttpWire.MAX_HEADER_BYTES) {
+                respond(conn, new HttpAuthServer.Response(400, ""), HttpWire.TEXT, false);
+            }
+            return;
+        }
+        HttpWire.Head head = HttpWire.parseHead(in, headEnd);
+        if (head == null) {
+            respond(conn, new HttpAuthServer.Response(400, ""), HttpWire.TEXT, false);
+            return;
+        }
+
+        if ("/metrics".equals(head.path())) {
+            consume(in, headEnd);
+            if (!"GET".equalsIgnoreCase(head.method())) {
+                respond(conn, new HttpAuthServer.Response(405, ""), HttpWire.TEXT, false);
+            } else {
+                respond(conn, new HttpAuthServer.Response(200, endpoint.renderMetrics()), HttpWire.METRICS,
+                        head.keepAlive());
+            }
+            return;
+        }
+        if (!"/auth".equals(head.path())) {
+            respond(conn, new HttpAuthServer.Response(404, ""), HttpWire.TEXT, false);
+            return;
+        }
+        if (!"POST".equalsIgnoreCase(head.method())) {
+            respond(conn, new HttpAuthServer.Response(405, ""), HttpWire.TEXT, false);
+            return;
+        }
+        long contentLength = head.contentLength();
+        if (contentLength < 0) {
+            respond(conn, new HttpAuthServer.Response(411, ""), HttpWire.TEXT, false);
+            return;
+        }
+        if (contentLength > endpoint.maxBodyBytes()) {
+            respond(conn, new HttpAuthServer.Response(413, PamAuthHandler.TOO_LARGE), HttpWire.TEXT, false);
+            return;
+        }
+        if (in.position() < headEnd + contentLength) {
+            // 본문 대기
+            return;
+        }
+
+        // 본문은 버퍼 안의 구간 그대로 넘김 - 처리 중에는 읽기를 멈추므로 버퍼가 바뀌지 않고,
+        // 응답 준비 후 selector 스레드가 구간을 제거(0으로 지움)
+        ByteBuffer body = in.duplicate();
+        body.limit(headEnd + (int) contentLength).position(headEnd);
+        conn.pendingConsume = headEnd + (int) contentLength;
+        conn.processing = true;
+        conn.requestStarted = 0;
+        conn.key.interestOps(0);
+        boolean keepAlive = head.keepAlive();
+        try {
+            executor.execute(() -> {
+                HttpAuthServer.Response response = endpoint.processAuth(body);
+                complete(conn, response, keepAlive && !HttpWire.leavesUnreadBody(response.status()));
+            });
+        } catch (RejectedExecutionException exception) {
+            // 종료 중
+            conn.processing = false;
+            close(conn);
+        }
+    }
+
+    // executor 스레드에서 호출 - 응답 등록 후 selector에 쓰기 전환 요청
+    private void complete(Connection conn, HttpAuthServer.Response response, boolean keepAlive) {
+        conn.out = ByteBuffer.wrap(HttpWire.response(response, HttpWire.TEXT, keepAlive));
+        conn.keepAlive = keepAlive;
+        completed.add(conn);
+        selector.wakeup();
+    }
+
+    // selector 스레드에서 바로 응답
+    private void respond(Connection conn, HttpAuthServer.Response response, String contentType, boolean keepAlive) {
+        conn.requestStarted = 0;
+        conn.out = ByteBuffer.wrap(HttpWire.response(response, contentType, keepAlive));
+        conn.keepAlive = keepAlive;
+        conn.key.interestOps(SelectionKey.OP_WRITE);
+    }
+
+    // CRLFCRLF 다음 위치, 없으면 -1
+    private static int headEnd(ByteBuffer in) {
+        int limit = Math.min(in.position(), HttpWire.MAX_HEADER_BYTES);
+        for (int i = 3; i < limit; i++) {
+            if (in.get(i) == '\n' && in.get(i - 1) == '\r' && in.get(i - 2) == '\n' && in.get(i - 3) == '\r') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // 앞쪽 n바이트 제거 - 뒤로 밀린 자리에 남은 이전 내용(평문 PW 포함 가능)은 0으로 지움
+    private static void consume(ByteBuffer in, int n) {
+        if (n == 0) {
+            return;
+        }
+        int filled = in.position();
+        in.flip().position(n);
+        in.compact();
+        for (int i = in.position(); i < filled; i++) {
+            in.put(i, (byte) 0);
+        }
+    }
+
+    private void sweepIdle(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection conn && !conn.processing && conn.out == null
+                    && (now - conn.lastActivity > IDLE_TIMEOUT_MILLIS
+                            || (conn.requestStarted > 0 && now - conn.requestStarted > REQUEST_TIMEOUT_MILLIS))) {
+                close(conn);
+            }
+        }
+    }
+
+    private void close(Connection conn) {
+        conn.key.cancel();
+        try {
+            conn.channel.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("NioHttpTransport", exception);
+        }
+        // 판정 중인 요청이 버퍼를 읽고 있으면 반납은 finishProcessing에서
+        if (conn.in != null && !conn.processing) {
+            releaseBuffer(conn.in);
+            conn.in = null;
+        }
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buf = bufferPool.poll();
+        return buf != null ? buf : ByteBuffer.allocateDirect(bufferBytes);
+    }
+
+    private void releaseBuffer(ByteBuffer buf) {
+        buf.clear();
+        while (buf.remaining() >= Long.BYTES) {
+            buf.putLong(0L);
+        }
+        while (buf.hasRemaining()) {
+            buf.put((byte) 0);
+        }
+        buf.clear();
+        if (bufferPool.size() < MAX_POOLED_BUFFERS) {
+            bufferPool.add(buf);
+        }
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection conn) {
+                close(conn);
+            }
+        }
+        closeServerChannel();
+        // 이미 판정이 끝난 요청의 버퍼 정리
+        Connection done;
+        while ((done = completed.poll()) != null) {
+            finishProcessing(done);
+        }
+        try {
+            selector.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("NioHttpTransport", exception);
+        }
+        bufferPool.clear();
+    }
+
+    private void closeServerChannel() {
+        try {
+            serverChannel.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("NioHttpTransport", exception);
+        }
+        if (socketPath != null) {
+            UnixSockets.unlink(socketPath, "NioHttpTransport");
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        // selector 스레드가 다음 루프에서 닫음
+        accepting = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        running = false;
+        if (selectorThread == null) {
+            shutdown();
+            return;
+        }
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(Math.max(delaySeconds, 1)));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,91 +1,123 @@
 package dev.replayshield.server;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-
-import com.sun.net.httpserver.HttpExchange;
+import java.util.concurrent.locks.ReentrantLock;
 
+import dev.replayshield.db.AuthJournal;
 import dev.replayshield.db.SecureDbSession;
-import dev.replayshield.util.ReplayShieldException;
-import dev.replayshield.util.ReplayShieldException.ErrorType;
+import dev.replayshield.security.PasswordDigest;
 
 public class PamAuthHandler {
 
+    // 세션 모드 복호화-수정-재암호화 구간 보호 (마지막 저장이 이기는 유실 방지)
+    private static final ReentrantLock FILE_SESSION_LOCK = new ReentrantLock();
+
+    // 요청 한도 초과 응답 (HTTP 429)
+    public static final String RATE_LIMITED = "RATE_LIMITED";
+    // 형식이 잘못된 본문 (HTTP 400) / 크기 한도 초과 본문 (HTTP 413)
+    public static final String BAD_REQUEST = "BAD_REQUEST";
+    public static final String TOO_LARGE = "TOO_LARGE";
+
     private final byte[] key;
+    private final AuthEngine engine;
+    private final AuthRateLimiter rateLimiter;
+    private final ServerMetrics metrics;
 
+    // 요청마다 복호화/재암호화하는 세션 모드
     public PamAuthHandler(byte[] key) {
         this.key = key;
+        this.engine = null;
+        this.rateLimiter = null;
+        this.metrics = null;
     }
 
-    public String handleHttpPost(HttpExchange exchange) throws SQLException {
-        String body = readRequestBody(exchange);
+    // serve 모드 - 상주 DB 위의 인증 엔진 사용
+    public PamAuthHandler(AuthEngine engine) {
+        this(engine, null, null);
+    }
 
-        Map<String, String> form = parseFormUrlEncoded(body);
-        String username = form.get("username");
-        String password = form.get("password");
+    public PamAuthHandler(AuthEngine engine, AuthRateLimiter rateLimiter, ServerMetrics metrics) {
+        this.key = null;
+        this.engine = engine;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
 
-        if (username == null || password == null) {
+    // 파싱된 form 처리 (username/password 누락은 FAIL)
+    String handleParsedForm(FormParser form) throws SQLException {
+        String username = form.username();
+        if (username == null || !form.hasPassword()) {
             return "FAIL";
         }
-
-        return authenticate(username, password);
+        return handleCredentials(username, form.buffer(), form.passwordOffset(), form.passwordLength(),
+                form.rhost());
     }
 
-    private String readRequestBody(HttpExchange exchange) {
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                sb.append(line);
+    // 디코딩된 자격 증명 처리 (form/바이너리 프로토콜 공통). password 영역은 호출자가 지움
+    public String handleCredentials(String username, byte[] password, int offset, int length, String rhost)
+            throws SQLException {
+        // 제한 초과면 digest/DB 작업 없이 바로 거절
+        if (rateLimiter != null) {
+            AuthRateLimiter.Decision decision = rateLimiter.check(username, rhost);
+            if (decision != AuthRateLimiter.Decision.ALLOWED) {
+                if (metrics != null) {
+                    metrics.recordRateLimited(decision);
+                }
+                return RATE_LIMITED;
             }
-            return sb.toString();
-        } catch (IOException exception) {
-            throw new ReplayShieldException(
-                    ErrorType.HTTP_SERVER,
-                    "Failed to read HTTP request body",
-                    exception);
         }
+
+        String result = authenticateDigest(username, PasswordDigest.sha256(password, offset, length));
+        if (metrics != null) {
+            metrics.recordResult(result);
+        }
+        return result;
     }
 
-    private Map<String, String> parseFormUrlEncoded(String body) {
-        Map<String, String> map = new HashMap<>();
-        if (body == null || body.isEmpty())
-            return map;
-        String[] parts = body.split("&");
-        for (String part : parts) {
-            int idx = part.indexOf('=');
-            if (idx <= 0)
-                continue;
-            String k = URLDecoder.decode(part.substring(0, idx), StandardCharsets.UTF_8);
-            String v = URLDecoder.decode(part.substring(idx + 1), StandardCharsets.UTF_8);
-            map.put(k, v);
-        }
-        return map;
+    // PASS/FAIL - password는 UTF-8 평문 바이트
+    public String authenticate(String username, byte[] password) throws SQLException {
+        return authenticateDigest(username, PasswordDigest.sha256(password));
     }
 
-    // PASS/FAIL
-    public String authenticate(String username, String password) throws SQLException {
+    private String authenticateDigest(String username, byte[] pwHash) throws SQLException {
+        if (engine != null) {
+            return engine.authenticate(username, pwHash);
+        }
+        // 세션 모드는 요청마다 파일 전체를 다시 쓰므로 사용자와 무관하게 전체 직렬화.
+        // 기록할 변경이 없으면(없는 사용자/미등록 PW) 세션 종료 시 재암호화를 생략한다.
+        FILE_SESSION_LOCK.lock();
         try (SecureDbSession.DbSession session = SecureDbSession.openWritable(key)) {
-            return doAuth(session.connection(), username, password);
+            return recordAttempt(session.connection(), username, pwHash, System.currentTimeMillis()).response();
+        } finally {
+            FILE_SESSION_LOCK.unlock();
         }
     }
 
-    private String doAuth(Connection conn, String username, String password) throws SQLException {
-        String hash = hashPassword(password);
+    private String doAuth(Connection conn, String username, byte[] password) throws SQLException {
+        return recordAttempt(conn, username, PasswordDigest.sha256(password), System.currentTimeMillis())
+                .response();
+    }
+
+    // 저널 레코드 재적용 - 기록 당시 시각으로 같은 판정 로직을 다시 실행
+    public static void replay(Connection conn, AuthJournal.Entry entry) throws SQLException {
+        recordAttempt(conn, entry.username(), journalDigest(entry.pwHash()), entry.timestamp());
+    }
 
+    // 이전 버전 저널은 Base64 문자열(44바이트)로 기록됨
+    private static byte[] journalDigest(byte[] recorded) {
+        if (recorded.length == PasswordDigest.LENGTH) {
+            return recorded;
+        }
+        return Base64.getDecoder().decode(recorded);
+    }
+
+    // 인증 판정 + 사용 기록
+    static AuthOutcome recordAttempt(Connection conn, String username, byte[] hash, long now)
+            throws SQLException {
         // 1) user_config에서 block_count 조회
         int blockCount;
         try (PreparedStatement ps = conn.prepareStatement("""
@@ -94,14 +126,12 @@ public class PamAuthHandler {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) {
-                    return "FAIL"; // 사용자 없음
+                    return AuthOutcome.UNKNOWN; // 사용자 없음
                 }
                 blockCount = rs.getInt(1);
             }
         }
 
-        refreshBlockedState(conn, username, blockCount);
-
         // 2) password_pool에서 해당 패스워드 존재 여부 확인
         int pwId;
         String pwHint;
@@ -112,10 +142,10 @@ public class PamAuthHandler {
                     WHERE username=? AND pw_hash=?
                 """)) {
             ps.setString(1, username);
-            ps.setString(2, hash);
+            ps.setBytes(2, hash);
             try (ResultSet rs = ps.executeQuery()) {
                 if (!rs.next()) {
-                    return "FAIL"; // 등록되지 않은 PW
+                    return AuthOutcome.UNKNOWN; // 등록되지 않은 PW
                 }
                 pwId = rs.getInt("id");
                 pwHint = rs.getString("pw_hint");
@@ -123,8 +153,6 @@ public class PamAuthHandler {
             }
         }
 
-        long now = System.currentTimeMillis();
-
         // 3-1) block된 경우 last_use 업데이트 하고 FAIL
         if (blocked) {
             try (PreparedStatement ps = conn.prepareStatement("""
@@ -136,8 +164,8 @@ public class PamAuthHandler {
                 ps.setInt(2, pwId);
                 ps.executeUpdate();
             }
-            refreshBlockedState(conn, username, blockCount);
-            return "FAIL";
+            // 이미 window 안의 행이 최신으로 이동할 뿐이라 blocked 집합은 그대로
+            return AuthOutcome.BLOCKED;
         }
 
         // 3-2) PASS: history에 추가
@@ -146,17 +174,18 @@ public class PamAuthHandler {
                     VALUES(?, ?, ?, ?)
                 """)) {
             ps.setString(1, username);
-            ps.setString(2, hash);
+            ps.setBytes(2, hash);
             ps.setString(3, pwHint != null ? pwHint : "****");
             ps.setLong(4, now);
             ps.executeUpdate();
         }
 
-        // hit_count/last_use 증가
+        // hit_count/last_use 증가 + 최신 사용으로 window에 진입
         try (PreparedStatement ps = conn.prepareStatement("""
                     UPDATE password_pool
                     SET hit_count = hit_count + 1,
-                        last_use = ?
+                        last_use = ?,
+                        blocked = 1
                     WHERE id=?
                 """)) {
             ps.setLong(1, now);
@@ -164,49 +193,102 @@ public class PamAuthHandler {
             ps.executeUpdate();
         }
 
-        refreshBlockedState(conn, username, blockCount);
+        // window를 넘친 가장 오래된 1건만 해제
+        unblockOldestOverflow(conn, username, pwId, blockCount);
 
-        return "PASS";
+        return AuthOutcome.PASS;
     }
 
-    private String hashPassword(String pw) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] digest = md.digest(pw.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(digest);
-        } catch (NoSuchAlgorithmException exception) {
-            throw new ReplayShieldException(
-                    ErrorType.PAM_AUTH,
-                    "SHA-256 digest not available",
-                    exception);
+    // 판정 결과 - recorded는 DB 변경(저널 기록 대상) 여부
+    enum AuthOutcome {
+        UNKNOWN("FAIL", false),
+        BLOCKED("FAIL", true),
+        PASS("PASS", true);
+
+        private final String response;
+        private final boolean recorded;
+
+        AuthOutcome(String response, boolean recorded) {
+            this.response = response;
+            this.recorded = recorded;
+        }
+
+        String response() {
+            return response;
+        }
+
+        boolean recorded() {
+            return recorded;
         }
     }
 
-    // last_use 기준으로 block 대상 패스워드계산
-    public static void refreshBlockedState(Connection conn, String username, int blockCount) throws SQLException {
+    // blocked 행 = last_use 기준 최근 block_count개 (last_use > 0).
+    // 인증 시에는 사용된 행 1건 진입 + 밀려난 1건 해제만 수행하고,
+    // block_count 변경/패스워드 삭제 시에는 차이만큼만 조정한다.
+    public static void adjustBlockedWindow(Connection conn, String username, int blockCount) throws SQLException {
+        int target = Math.max(blockCount, 0);
+        int current;
         try (PreparedStatement ps = conn.prepareStatement("""
-                UPDATE password_pool SET blocked=0 WHERE username=?
+                SELECT COUNT(*) FROM password_pool WHERE username=? AND blocked=1
                 """)) {
             ps.setString(1, username);
-            ps.executeUpdate();
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                current = rs.getInt(1);
+            }
         }
 
-        if (blockCount <= 0) {
-            return;
+        if (current > target) {
+            // 가장 오래 전에 사용된 blocked 행부터 해제
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    UPDATE password_pool SET blocked=0
+                    WHERE id IN (
+                        SELECT id FROM password_pool
+                        WHERE username=? AND blocked=1
+                        ORDER BY last_use ASC, id ASC
+                        LIMIT ?
+                    )
+                    """)) {
+                ps.setString(1, username);
+                ps.setInt(2, current - target);
+                ps.executeUpdate();
+            }
+        } else if (current < target) {
+            // 가장 최근에 사용된 비blocked 행부터 차단
+            try (PreparedStatement ps = conn.prepareStatement("""
+                    UPDATE password_pool SET blocked=1
+                    WHERE id IN (
+                        SELECT id FROM password_pool
+                        WHERE username=? AND blocked=0 AND last_use > 0
+                        ORDER BY last_use DESC, id DESC
+                        LIMIT ?
+                    )
+                    """)) {
+                ps.setString(1, username);
+                ps.setInt(2, target - current);
+                ps.executeUpdate();
+            }
         }
+    }
 
+    // 새로 진입한 행 때문에 block_count를 넘었으면 가장 오래된 blocked 행 1건 해제
+    // (방금 사용한 행은 같은 시각 충돌이 있어도 제외)
+    private static void unblockOldestOverflow(Connection conn, String username, int usedId, int blockCount)
+            throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement("""
-                UPDATE password_pool
-                SET blocked=1
-                WHERE id IN (
+                UPDATE password_pool SET blocked=0
+                WHERE id = (
                     SELECT id FROM password_pool
-                    WHERE username=? AND last_use > 0
-                    ORDER BY last_use DESC
-                    LIMIT ?
+                    WHERE username=? AND blocked=1 AND id<>?
+                    ORDER BY last_use ASC, id ASC
+                    LIMIT 1
                 )
+                AND (SELECT COUNT(*) FROM password_pool WHERE username=? AND blocked=1) > ?
                 """)) {
             ps.setString(1, username);
-            ps.setInt(2, blockCount);
+            ps.setInt(2, usedId);
+            ps.setString(3, username);
+            ps.setInt(4, Math.max(blockCount, 0));
             ps.executeUpdate();
         }
     }
@@ -0,0 +1,170 @@
+package dev.replayshield.server;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * 블로킹 소켓 리스너의 읽기 제한 시간 감시.
+ * SocketChannel 스트림에는 SO_TIMEOUT이 없으므로 감시 스레드가 읽기에서 막힌 연결을 닫아 깨운다.
+ * 기준은 NIO 전송과 같다: 아무것도 받지 못한 채 유휴 시간이 지나거나, 요청 하나를 다 받기까지 요청 시간이 지나면 닫는다.
+ * 응답 처리 중(읽기 밖)인 시간은 제한하지 않는다.
+ */
+final class ReadDeadlines implements AutoCloseable {
+
+    // NioHttpTransport와 같은 값
+    static final long IDLE_TIMEOUT_MILLIS = 10_000;
+    static final long REQUEST_TIMEOUT_MILLIS = 30_000;
+
+    private final long idleTimeoutMillis;
+    private final long requestTimeoutMillis;
+    private final String owner;
+    private final Set<Watch> watches = ConcurrentHashMap.newKeySet();
+    private final Thread sweeper;
+    private volatile boolean closed;
+
+    ReadDeadlines(String owner, long idleTimeoutMillis, long requestTimeoutMillis) {
+        this.owner = owner;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+
+        this.sweeper = new Thread(this::sweepLoop, "replayshield-deadline-" + owner);
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    // 연결 하나 감시 시작. 연결을 끝낼 때 Watch를 닫아야 함
+    Watch watch(SocketChannel channel) {
+        Watch watch = new Watch(channel);
+        watches.add(watch);
+        return watch;
+    }
+
+    private void sweepLoop() {
+        // 유휴 한도의 절반 주기로 확인 (최대 1초)
+        long interval = Math.max(1, Math.min(1_000, idleTimeoutMillis / 2));
+        while (!closed) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException exception) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Watch watch : watches) {
+                if (watch.expired(now)) {
+                    watch.expire();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        sweeper.interrupt();
+    }
+
+    /** 연결 하나의 읽기 시각 기록. */
+    final class Watch implements AutoCloseable {
+
+        private final SocketChannel channel;
+        private volatile boolean reading;
+        // 현재 막혀 있는 읽기를 시작한 시각
+        private volatile long readStarted;
+        // 0이면 요청 사이
+        private volatile long requestStarted;
+        private volatile boolean timedOut;
+
+        private Watch(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        // 요청의 첫 바이트를 받았을 때
+        void beginRequest() {
+            if (requestStarted == 0) {
+                requestStarted = System.currentTimeMillis();
+            }
+        }
+
+        // 요청 하나를 다 받았을 때
+        void endRequest() {
+            requestStarted = 0;
+        }
+
+        int read(ByteBuffer buf) throws IOException {
+            enterRead();
+            try {
+                return channel.read(buf);
+            } finally {
+                reading = false;
+            }
+        }
+
+        // 스트림 읽기도 같은 기준으로 감시 (버퍼 스트림 안쪽에 둘 것)
+        InputStream wrap(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    enterRead();
+                    try {
+                        return super.read();
+                    } finally {
+                        reading = false;
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    enterRead();
+                    try {
+                        return super.read(b, off, len);
+                    } finally {
+                        reading = false;
+                    }
+                }
+            };
+        }
+
+        // 유휴 시간은 읽기에서 막혀 있는 시간만 셈
+        private void enterRead() {
+            readStarted = System.currentTimeMillis();
+            reading = true;
+        }
+
+        // 제한 시간 초과로 닫혔으면 true (이때의 읽기 예외는 기록하지 않음)
+        boolean timedOut() {
+            return timedOut;
+        }
+
+        private boolean expired(long now) {
+            if (!reading) {
+                return false;
+            }
+            long started = requestStarted;
+            return now - readStarted > idleTimeoutMillis
+                    || (started > 0 && now - started > requestTimeoutMillis);
+        }
+
+        // 막힌 읽기는 AsynchronousCloseException으로 깨어남
+        private void expire() {
+            timedOut = true;
+            watches.remove(this);
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                ErrorReporter.logError(owner, exception);
+            }
+        }
+
+        @Override
+        public void close() {
+            watches.remove(this);
+        }
+    }
+}
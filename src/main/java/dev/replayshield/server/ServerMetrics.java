@@ -0,0 +1,77 @@
+package dev.replayshield.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 인증 서버 카운터. GET /metrics에서 Prometheus 텍스트 형식으로 출력한다.
+ */
+public final class ServerMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder userLimited = new LongAdder();
+    private final LongAdder sourceLimited = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+    private final AuthRateLimiter rateLimiter;
+
+    public ServerMetrics(AuthRateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    void recordRequest() {
+        requests.increment();
+    }
+
+    void recordResult(String response) {
+        if ("PASS".equals(response)) {
+            passes.increment();
+        } else {
+            failures.increment();
+        }
+    }
+
+    void recordRateLimited(AuthRateLimiter.Decision decision) {
+        if (decision == AuthRateLimiter.Decision.SOURCE_LIMITED) {
+            sourceLimited.increment();
+        } else {
+            userLimited.increment();
+        }
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    void recordBusy() {
+        busy.increment();
+    }
+
+    // 본문 형식 오류 / 크기 초과
+    void recordBadRequest() {
+        badRequests.increment();
+    }
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(512);
+        metric(sb, "replayshield_auth_requests_total", requests.sum());
+        metric(sb, "replayshield_auth_pass_total", passes.sum());
+        metric(sb, "replayshield_auth_fail_total", failures.sum());
+        sb.append("replayshield_auth_rate_limited_total{scope=\"user\"} ").append(userLimited.sum()).append('\n');
+        sb.append("replayshield_auth_rate_limited_total{scope=\"source\"} ").append(sourceLimited.sum()).append('\n');
+        metric(sb, "replayshield_auth_errors_total", errors.sum());
+        metric(sb, "replayshield_auth_busy_total", busy.sum());
+        metric(sb, "replayshield_auth_bad_request_total", badRequests.sum());
+        metric(sb, "replayshield_rate_limit_user_per_minute", rateLimiter.userPerMinute());
+        metric(sb, "replayshield_rate_limit_user_burst", rateLimiter.userBurst());
+        metric(sb, "replayshield_rate_limit_source_per_minute", rateLimiter.sourcePerMinute());
+        metric(sb, "replayshield_rate_limit_source_burst", rateLimiter.sourceBurst());
+        return sb.toString();
+    }
+
+    private static void metric(StringBuilder sb, String name, long value) {
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+}
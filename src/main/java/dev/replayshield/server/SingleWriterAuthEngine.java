@@ -0,0 +1,208 @@
+package dev.replayshield.server;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.server.PamAuthHandler.AuthOutcome;
+import dev.replayshield.util.ErrorReporter;
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * 모든 인증 판정을 전용 쓰기 스레드 하나가 처리하는 엔진.
+ * 요청은 제한된 큐에 쌓이고, 쓰기 스레드가 묶음 단위로 꺼내 한 트랜잭션으로 적용한 뒤
+ * 같은 배타 구간 안에서 저널을 한 번의 fsync로 기록하고 나서 각 요청의 future를 완료한다.
+ */
+final class SingleWriterAuthEngine implements AuthEngine {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 4_096;
+    static final int DEFAULT_MAX_BATCH = 256;
+    // 큐가 가득 찼을 때 요청 스레드가 기다리는 최대 시간
+    private static final long ENQUEUE_TIMEOUT_MILLIS = 2_000;
+    // 쓰기 스레드가 멈추거나 종료 중일 때 요청 스레드가 결과를 기다리는 최대 시간
+    private static final long RESULT_TIMEOUT_MILLIS = 10_000;
+
+    private static final Request STOP = new Request(null, null, null);
+
+    private final ResidentDb residentDb;
+    private final BlockingQueue<Request> queue;
+    private final int maxBatch;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    SingleWriterAuthEngine(ResidentDb residentDb) {
+        this(residentDb, DEFAULT_QUEUE_CAPACITY, DEFAULT_MAX_BATCH);
+    }
+
+    SingleWriterAuthEngine(ResidentDb residentDb, int queueCapacity, int maxBatch) {
+        if (queueCapacity <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+        }
+        this.residentDb = residentDb;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::runLoop, "replayshield-auth-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    private record Request(String username, byte[] pwHash, CompletableFuture<String> result) {
+    }
+
+    @Override
+    public String authenticate(String username, byte[] pwHash) throws SQLException {
+        if (closed) {
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "Auth engine already closed.");
+        }
+        Request request = new Request(username, pwHash, new CompletableFuture<>());
+        try {
+            if (!queue.offer(request, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new ReplayShieldException(ErrorType.PAM_AUTH, "Auth queue full");
+            }
+            // close()가 큐를 비운 뒤에 들어간 요청은 쓰기 스레드가 처리하지 않음
+            if (closed && queue.remove(request)) {
+                throw new ReplayShieldException(ErrorType.PAM_AUTH, "Auth engine already closed.");
+            }
+            return request.result().get(RESULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "Timed out waiting for auth writer", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "Interrupted while waiting for auth", exception);
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ReplayShieldException(ErrorType.PAM_AUTH, "Auth failed", cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            // 이미 들어온 요청은 모두 처리한 뒤 종료
+            queue.put(STOP);
+            writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        // STOP 뒤에 들어온 요청은 처리되지 않으므로 바로 실패 처리
+        failQueued();
+    }
+
+    private void failQueued() {
+        List<Request> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        ReplayShieldException closedError = new ReplayShieldException(ErrorType.PAM_AUTH,
+                "Auth engine already closed.");
+        for (Request request : leftover) {
+            if (request != STOP) {
+                request.result().completeExceptionally(closedError);
+            }
+        }
+    }
+
+    private void runLoop() {
+        List<Request> batch = new ArrayList<>(maxBatch);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            queue.drainTo(batch, maxBatch - 1);
+
+            boolean stop = batch.remove(STOP);
+            if (!batch.isEmpty()) {
+                applyBatch(batch);
+            }
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    // 묶음 하나를 한 트랜잭션으로 적용 - 요청별 실패는 savepoint로 격리
+    private void applyBatch(List<Request> batch) {
+        String[] responses = new String[batch.size()];
+        Throwable[] failures = new Throwable[batch.size()];
+        List<ResidentDb.Mutation> mutations = new ArrayList<>(batch.size());
+        try {
+            residentDb.execute(conn -> {
+                boolean originalAutoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try {
+                    for (int i = 0; i < batch.size(); i++) {
+                        Request request = batch.get(i);
+                        long now = System.currentTimeMillis();
+                        Savepoint savepoint = conn.setSavepoint();
+                        try {
+                            AuthOutcome outcome = PamAuthHandler.recordAttempt(conn, request.username(),
+                                    request.pwHash(), now);
+                            conn.releaseSavepoint(savepoint);
+                            responses[i] = outcome.response();
+                            if (outcome.recorded()) {
+                                mutations.add(new ResidentDb.Mutation(request.username(), request.pwHash(), now));
+                            }
+                        } catch (SQLException | RuntimeException exception) {
+                            rollbackTo(conn, savepoint);
+                            failures[i] = exception;
+                        }
+                    }
+                    conn.commit();
+                    // 배타 잠금을 놓기 전에 저널 추가 - 그 사이 스냅샷이 끼어들면
+                    // 이미 반영된 변경이 저널에 남아 재시작 시 두 번 재생됨
+                    residentDb.recordMutations(mutations);
+                } catch (SQLException exception) {
+                    conn.rollback();
+                    throw exception;
+                } finally {
+                    conn.setAutoCommit(originalAutoCommit);
+                }
+                return null;
+            });
+        } catch (SQLException | RuntimeException exception) {
+            ErrorReporter.logError("SingleWriterAuthEngine", exception);
+            for (Request request : batch) {
+                request.result().completeExceptionally(exception);
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            if (failures[i] != null) {
+                batch.get(i).result().completeExceptionally(failures[i]);
+            } else {
+                batch.get(i).result().complete(responses[i]);
+            }
+        }
+    }
+
+    private static void rollbackTo(Connection conn, Savepoint savepoint) {
+        try {
+            conn.rollback(savepoint);
+        } catch (SQLException exception) {
+            ErrorReporter.logError("SingleWriterAuthEngine", exception);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package dev.replayshield.server;
+
+import java.sql.SQLException;
+
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.server.PamAuthHandler.AuthOutcome;
+
+/**
+ * 요청 스레드에서 바로 판정하는 엔진.
+ * 같은 사용자 요청만 {@link ResidentDb#execute(String, ResidentDb.SqlWork)}로 직렬화된다.
+ * SQL은 모든 스트라이프가 sqlite-jdbc 연결 하나(연결 단위로 동기화)를 공유하지만 짧고,
+ * 비용이 큰 저널 fsync는 {@link ResidentDb#recordMutations}가 동시에 들어온 사용자들의 레코드를 묶어 한 번에 수행하므로
+ * 한 사용자가 fsync를 기다리는 동안 다른 사용자의 판정이 진행된다.
+ * SQL까지 판정 경로에서 빼려면 memory 엔진을 사용한다.
+ */
+final class StripedAuthEngine implements AuthEngine {
+
+    private final ResidentDb residentDb;
+
+    StripedAuthEngine(ResidentDb residentDb) {
+        this.residentDb = residentDb;
+    }
+
+    @Override
+    public String authenticate(String username, byte[] pwHash) throws SQLException {
+        long now = System.currentTimeMillis();
+        AuthOutcome outcome = residentDb.execute(username, conn -> {
+            AuthOutcome result = PamAuthHandler.recordAttempt(conn, username, pwHash, now);
+            if (result.recorded()) {
+                // 변경분만 저널에 추가 (전체 재암호화 없음)
+                residentDb.recordMutation(username, pwHash, now);
+            }
+            return result;
+        });
+        return outcome.response();
+    }
+}
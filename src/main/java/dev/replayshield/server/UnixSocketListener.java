@@ -0,0 +1,204 @@
+package dev.replayshield.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * Unix 도메인 소켓 위의 최소 HTTP/1.1 리스너.
+ * 접근 제어는 소켓 파일 권한(0600, root)으로 하고, 한 연결에서 요청을 순서대로 처리한다(keep-alive, pipelining).
+ * 읽기에서 멈춘 연결은 {@link ReadDeadlines}가 NIO 전송과 같은 기준으로 닫는다.
+ */
+final class UnixSocketListener implements HttpTransport {
+
+    private static final int IO_BUFFER_BYTES = 8 * 1024;
+
+    private final Path socketPath;
+    private final AuthEndpoint server;
+    private final ExecutorService executor;
+    private final ServerSocketChannel channel;
+    private final ReadDeadlines deadlines;
+    // 처리 중이거나 keep-alive로 유지 중인 연결
+    private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+    private Thread acceptThread;
+
+    UnixSocketListener(Path socketPath, AuthEndpoint server, ExecutorService executor) throws IOException {
+        this(socketPath, server, executor, ReadDeadlines.IDLE_TIMEOUT_MILLIS, ReadDeadlines.REQUEST_TIMEOUT_MILLIS);
+    }
+
+    UnixSocketListener(Path socketPath, AuthEndpoint server, ExecutorService executor, long idleTimeoutMillis,
+            long requestTimeoutMillis) throws IOException {
+        this.socketPath = socketPath;
+        this.server = server;
+        this.executor = executor;
+
+        this.channel = UnixSockets.bind(socketPath);
+        this.deadlines = new ReadDeadlines("UnixSocketListener", idleTimeoutMillis, requestTimeoutMillis);
+    }
+
+    @Override
+    public void start() {
+        acceptThread = new Thread(this::acceptLoop, "replayshield-uds-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    private void acceptLoop() {
+        while (channel.isOpen()) {
+            SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException exception) {
+                return;
+            } catch (IOException exception) {
+                ErrorReporter.logError("UnixSocketListener", exception);
+                continue;
+            }
+            try {
+                executor.execute(() -> serve(client));
+            } catch (RejectedExecutionException exception) {
+                // 종료 중
+                closeQuietly(client);
+                return;
+            }
+        }
+    }
+
+    // 연결이 닫히거나 오류 응답을 보낼 때까지 요청을 순서대로 처리 (keep-alive, pipelining)
+    private void serve(SocketChannel client) {
+        clients.add(client);
+        ReadDeadlines.Watch watch = deadlines.watch(client);
+        try (client;
+                watch;
+                InputStream in = new BufferedInputStream(watch.wrap(Channels.newInputStream(client)),
+                        IO_BUFFER_BYTES);
+                OutputStream out = new BufferedOutputStream(Channels.newOutputStream(client), IO_BUFFER_BYTES)) {
+            while (serveOne(in, out, watch)) {
+                // 이미 도착한 다음 요청이 없을 때만 flush - 파이프라인 응답은 묶어서 전송
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException exception) {
+            // 종료 중 강제로 닫았거나 읽기 제한 시간으로 닫은 연결은 기록하지 않음
+            if (channel.isOpen() && !watch.timedOut()) {
+                ErrorReporter.logError("UnixSocketListener", exception);
+            }
+        } finally {
+            clients.remove(client);
+        }
+    }
+
+    // 요청 1건 처리. 연결을 계속 쓸 수 있으면 true
+    private boolean serveOne(InputStream in, OutputStream out, ReadDeadlines.Watch watch) throws IOException {
+        String raw = readHead(in, watch);
+        if (raw == null) {
+            return false;
+        }
+        HttpWire.Head head = HttpWire.parseHead(raw);
+        HttpAuthServer.Response response;
+        String contentType = HttpWire.TEXT;
+        if (head == null) {
+            response = new HttpAuthServer.Response(400, "");
+        } else if ("/auth".equals(head.path())) {
+            if (!"POST".equalsIgnoreCase(head.method())) {
+                response = new HttpAuthServer.Response(405, "");
+            } else if (head.contentLength() < 0) {
+                response = new HttpAuthServer.Response(411, "");
+            } else if (head.contentLength() > server.maxBodyBytes()) {
+                // 본문을 읽지 않고 거절 (남은 본문 때문에 연결은 닫음)
+                response = new HttpAuthServer.Response(413, PamAuthHandler.TOO_LARGE);
+            } else {
+                // 본문은 소켓에서 바로 스트리밍 파싱 (크기 한도는 파서가 적용)
+                response = server.processAuth(in, head.contentLength());
+            }
+        } else if ("/metrics".equals(head.path())) {
+            if (!"GET".equalsIgnoreCase(head.method())) {
+                response = new HttpAuthServer.Response(405, "");
+            } else {
+                response = new HttpAuthServer.Response(200, server.renderMetrics());
+                contentType = HttpWire.METRICS;
+            }
+        } else {
+            response = new HttpAuthServer.Response(404, "");
+        }
+        watch.endRequest();
+        boolean keepAlive = head != null && head.keepAlive() && !HttpWire.leavesUnreadBody(response.status());
+        out.write(HttpWire.response(response, contentType, keepAlive));
+        return keepAlive;
+    }
+
+    // 빈 줄(CRLFCRLF)까지 읽음. 요청 전 연결 종료면 null, 한도 초과 또는 중간 종료면 빈 문자열
+    private static String readHead(InputStream in, ReadDeadlines.Watch watch) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        int matched = 0;
+        while (head.size() < HttpWire.MAX_HEADER_BYTES) {
+            int b = in.read();
+            if (b < 0) {
+                return head.size() == 0 ? null : "";
+            }
+            // 요청 사이의 빈 줄은 무시
+            if (head.size() == 0 && (b == '\r' || b == '\n')) {
+                continue;
+            }
+            if (head.size() == 0) {
+                watch.beginRequest();
+            }
+            head.write(b);
+            // \r\n\r\n 상태 추적
+            if ((matched % 2 == 0 && b == '\r') || (matched % 2 == 1 && b == '\n')) {
+                matched++;
+            } else {
+                matched = b == '\r' ? 1 : 0;
+            }
+            if (matched == 4) {
+                return head.toString(StandardCharsets.US_ASCII);
+            }
+        }
+        return "";
+    }
+
+    private static void closeQuietly(SocketChannel client) {
+        try {
+            client.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("UnixSocketListener", exception);
+        }
+    }
+
+    @Override
+    public void stopAccepting() {
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            ErrorReporter.logError("UnixSocketListener", exception);
+        }
+        UnixSockets.unlink(socketPath, "UnixSocketListener");
+    }
+
+    @Override
+    public void stop(int delaySeconds) {
+        stopAccepting();
+        deadlines.close();
+        // 유지 중인 연결도 닫아 대기 중인 읽기를 깨움
+        for (SocketChannel client : clients) {
+            closeQuietly(client);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package dev.replayshield.server;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import dev.replayshield.util.ErrorReporter;
+
+/**
+ * Unix 도메인 소켓 생성/정리 공통 처리 - 접근 제어는 소켓 파일 권한(0600, root)으로 한다.
+ */
+final class UnixSockets {
+
+    private UnixSockets() {
+    }
+
+    // 상위 디렉터리 생성, 이전 실행이 남긴 소켓 파일 제거 후 bind
+    static ServerSocketChannel bind(Path socketPath) throws IOException {
+        Path parent = socketPath.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(socketPath);
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(UnixDomainSocketAddress.of(socketPath));
+            Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+        } catch (IOException | UnsupportedOperationException exception) {
+            channel.close();
+            Files.deleteIfExists(socketPath);
+            throw exception;
+        }
+        return channel;
+    }
+
+    static void unlink(Path socketPath, String context) {
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException exception) {
+            ErrorReporter.logError(context, exception);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.replayshield.util;
+
+import java.security.SecureRandom;
+
+/**
+ * 고정 크기 Bloom filter (거짓 양성만 있고 거짓 음성은 없음).
+ * 시드는 인스턴스마다 무작위라 외부에서 충돌 입력을 미리 만들 수 없다.
+ */
+public final class BloomFilter {
+
+    private static final SecureRandom SEED_SOURCE = new SecureRandom();
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long seed;
+
+    // expectedItems개를 넣었을 때 거짓 양성 비율이 falsePositiveRate 이하가 되도록 크기 결정
+    public BloomFilter(int expectedItems, double falsePositiveRate) {
+        int n = Math.max(expectedItems, 1);
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        m = Math.max(64, (m + 63) / 64 * 64);
+        this.bits = new long[(int) (m / 64)];
+        this.bitCount = m;
+        this.hashCount = Math.max(1, (int) Math.round((double) m / n * ln2));
+        this.seed = SEED_SOURCE.nextLong();
+    }
+
+    public void add(byte[] first, byte[] second) {
+        long h1 = hash(first, second, seed);
+        long h2 = hash(first, second, ~seed) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            bits[(int) (index >>> 6)] |= 1L << index;
+        }
+    }
+
+    public void add(byte[] value) {
+        add(value, null);
+    }
+
+    // false면 확실히 없음
+    public boolean mightContain(byte[] first, byte[] second) {
+        long h1 = hash(first, second, seed);
+        long h2 = hash(first, second, ~seed) | 1L;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Long.remainderUnsigned(h1 + i * h2, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean mightContain(byte[] value) {
+        return mightContain(value, null);
+    }
+
+    // 두 값을 구분자(길이)와 함께 이어서 해싱 - ("ab","c")와 ("a","bc")가 겹치지 않음
+    private static long hash(byte[] first, byte[] second, long seed) {
+        long h = seed;
+        h = mix(h, first);
+        if (second != null) {
+            h = mix(h, second);
+        }
+        return finish(h);
+    }
+
+    private static long mix(long h, byte[] data) {
+        h ^= data.length;
+        h *= 0x9E3779B97F4A7C15L;
+        for (byte b : data) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        return h;
+    }
+
+    // splitmix64 finalizer
+    private static long finish(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
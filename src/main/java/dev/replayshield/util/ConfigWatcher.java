@@ -0,0 +1,124 @@
+package dev.replayshield.util;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 설정 파일 다시 읽기 (파일 변경 감시).
+ * systemctl reload는 ExecReload에서 파일을 touch해 같은 경로로 들어온다 (내부 API인 sun.misc.Signal을 쓰지 않음).
+ * 새 설정이 검증을 통과하고 live 항목이 바뀐 경우에만 현재 설정을 교체하고 listener에 넘긴다.
+ * 읽기 실패 시 기존 설정을 그대로 유지한다.
+ */
+public final class ConfigWatcher implements AutoCloseable {
+
+    // 편집기 저장(임시 파일 + rename)처럼 이벤트가 연달아 오는 경우 한 번만 읽도록
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path file;
+    private final Consumer<ReplayShieldConfig.Live> listener;
+    private final Object reloadLock = new Object();
+    private volatile ReplayShieldConfig current;
+    private WatchService watchService;
+    private Thread worker;
+
+    public ConfigWatcher(Path file, ReplayShieldConfig initial, Consumer<ReplayShieldConfig.Live> listener) {
+        this.file = file;
+        this.current = initial;
+        this.listener = listener;
+    }
+
+    public ReplayShieldConfig current() {
+        return current;
+    }
+
+    // 설정 디렉터리 감시 시작. 감시를 못 하면 live 항목도 재시작해야 반영됨
+    public void start() {
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            watchService = FileSystems.getDefault().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            worker = new Thread(this::watchLoop, "replayshield-config");
+            worker.setDaemon(true);
+            worker.start();
+        } catch (IOException exception) {
+            ErrorReporter.logError("Config", "File watch unavailable, settings apply after restart: "
+                    + exception.getMessage());
+        }
+    }
+
+    // 다시 읽고 반영. 반영했으면 true
+    public boolean reload() {
+        synchronized (reloadLock) {
+            ReplayShieldConfig next;
+            try {
+                next = ReplayShieldConfig.load(file);
+            } catch (ReplayShieldException exception) {
+                ErrorReporter.logError("Config", "Keeping previous settings: " + exception.getMessage());
+                return false;
+            }
+            ReplayShieldConfig previous = current;
+            if (!next.startup().equals(previous.startup())) {
+                ErrorReporter.logError("Config",
+                        "Listener, engine, body limit and KDF settings take effect after restart");
+            }
+            if (next.live().equals(previous.live())) {
+                return false;
+            }
+            listener.accept(next.live());
+            // startup 항목은 실행 중인 값을 유지
+            current = new ReplayShieldConfig(previous.startup(), next.live());
+            ErrorReporter.logInfo("Config", "Reloaded " + file + ": " + next.live());
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException exception) {
+                ErrorReporter.logError("Config", exception);
+            }
+        }
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    private void watchLoop() {
+        Path name = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+                    // 대기 중 쌓인 이벤트는 이번 읽기에 포함
+                    WatchKey pending = watchService.poll();
+                    if (pending != null) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException exception) {
+            // 종료
+        }
+    }
+}
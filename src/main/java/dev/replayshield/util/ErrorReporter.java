@@ -39,6 +39,11 @@ public final class ErrorReporter {
         log(Level.WARNING, "[ERROR]", context, detail);
     }
 
+    // 오류가 아닌 운영 정보 (설정 다시 읽기 등)
+    public static void logInfo(String context, String detail) {
+        log(Level.INFO, "[INFO]", context, detail);
+    }
+
     public static void logFatal(String context, Throwable throwable) {
         log(Level.SEVERE, "[FATAL]", context, throwable);
     }
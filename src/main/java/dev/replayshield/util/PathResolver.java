@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.PosixFilePermissions;
 
 public class PathResolver {
 
@@ -12,41 +11,36 @@ public class PathResolver {
         return new File("/etc/replayshield/salt.bin");
     }
 
+    // 호스트별 성능 설정 (없으면 기본값)
+    public static File getConfigFile() {
+        return new File("/etc/replayshield/replayshield.conf");
+    }
+
     public static File getEncryptedDbFile() {
         return new File("/var/lib/replayshield/secure.db.enc");
     }
 
-    public static File getMemoryDbDir() {
-        return new File("/dev/shm/replayshield");
+    // 인증 변경분 암호화 저널 (secure.db.enc 옆)
+    public static File getJournalFile() {
+        return new File("/var/lib/replayshield/secure.db.journal");
     }
 
-    public static File getAdminKeyCacheFile() {
-        return new File(getMemoryDbDir(), "admin.key");
+    // serve 모드 인증 소켓 (root 전용 권한)
+    public static File getAuthSocketFile() {
+        return new File("/run/replayshield/auth.sock");
     }
 
-    // 메모리 영역에 [복호화된 DB]용 임시 파일 생성
-    public static Path createMemoryDbTempFile() {
-        File dir = getMemoryDbDir();
-        if (!dir.exists()) { // 없으면
-            if (!dir.mkdirs()) { // 만들기 - 실패하면 예외
-                throw new ReplayShieldException(
-                        ReplayShieldException.ErrorType.SYSTEM_ENVIRONMENT,
-                        "ERROR: Failed to create " + dir.getAbsolutePath());
-            }
-        }
+    // 바이너리 인증 프로토콜 소켓
+    public static File getBinaryAuthSocketFile() {
+        return new File("/run/replayshield/auth-bin.sock");
+    }
 
-        // 임시파일 생성 시도
-        try {
-            Path dirPath = dir.toPath();
-            Files.setPosixFilePermissions(dirPath, PosixFilePermissions.fromString("rwx------"));
-            return Files.createTempFile(dirPath, "replayshield", ".db"); // Path 반환
+    public static File getMemoryDbDir() {
+        return new File("/dev/shm/replayshield");
+    }
 
-        } catch (IOException exception) {
-            throw new ReplayShieldException(
-                    ReplayShieldException.ErrorType.SYSTEM_ENVIRONMENT,
-                    "ERROR: Unable to create tmpfs database file.",
-                    exception);
-        }
+    public static File getAdminKeyCacheFile() {
+        return new File(getMemoryDbDir(), "admin.key");
     }
 
     // 필요 디렉터리 생성 확인
@@ -0,0 +1,164 @@
+package dev.replayshield.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+/**
+ * /etc/replayshield/replayshield.conf 설정 (불변).
+ * "key = value" 줄 단위, '#' 주석. 파일이 없거나 키가 빠지면 기본값을 쓴다.
+ * startup 항목은 재시작해야 반영되고, live 항목은 실행 중 다시 읽어서 바로 교체할 수 있다.
+ */
+public record ReplayShieldConfig(Startup startup, Live live) {
+
+    // 리스너, 스레드 모델, 본문 한도, 키 유도 비용 - 재시작 필요
+    public record Startup(String engine, String transport, boolean tcpEnabled, String tcpBindAddress, int tcpPort,
+            int maxBodyBytes, int pbkdf2Iterations) {
+    }
+
+    // 요청 한도, 스냅샷 저장 주기, 동시 처리 한도, 추적 캐시 크기, 종료 drain 제한 시간 - 실행 중 교체 가능
+    public record Live(int userPerMinute, int userBurst, int sourcePerMinute, int sourceBurst,
+            int rateLimitMaxTrackedKeys, long flushMaxDelayMillis, int flushMaxDirtyMutations, int maxConcurrentAuth,
+            long admissionTimeoutMillis, long drainTimeoutMillis) {
+    }
+
+    public static ReplayShieldConfig defaults() {
+        return new ReplayShieldConfig(
+                new Startup("striped", "jdk", false, "127.0.0.1", 4444, 4 * 1024, 200_000),
+                new Live(30, 10, 120, 30, 100_000, 30_000, 1_024, 64, 250, 5_000));
+    }
+
+    // 파일이 없으면 기본값
+    public static ReplayShieldConfig load(Path file) {
+        String text;
+        try {
+            text = Files.readString(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException exception) {
+            return defaults();
+        } catch (IOException exception) {
+            throw new ReplayShieldException(ErrorType.CONFIGURATION, "Failed to read " + file, exception);
+        }
+        return parse(text, file.toString());
+    }
+
+    public static ReplayShieldConfig parse(String text, String source) {
+        Map<String, String> values = new HashMap<>();
+        String[] lines = text.split("\r?\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int eq = line.indexOf('=');
+            if (eq <= 0) {
+                throw invalid(source, i + 1, "expected 'key = value'");
+            }
+            String key = line.substring(0, eq).strip();
+            if (values.put(key, line.substring(eq + 1).strip()) != null) {
+                throw invalid(source, i + 1, "duplicate key '" + key + "'");
+            }
+        }
+
+        Reader in = new Reader(values, source);
+        ReplayShieldConfig base = defaults();
+        Startup s = base.startup();
+        Live l = base.live();
+        Startup startup = new Startup(
+                in.choice("server.engine", s.engine(), "striped", "single-writer", "memory"),
+                in.choice("server.transport", s.transport(), "jdk", "nio"),
+                in.bool("server.tcp.enabled", s.tcpEnabled()),
+                in.string("server.tcp.bind_address", s.tcpBindAddress()),
+                in.integer("server.tcp.port", s.tcpPort(), 1, 65_535),
+                in.integer("auth.max_body_bytes", s.maxBodyBytes(), 256, 64 * 1024),
+                in.integer("kdf.pbkdf2_iterations", s.pbkdf2Iterations(), 100_000, 10_000_000));
+        Live live = new Live(
+                in.integer("rate_limit.user.per_minute", l.userPerMinute(), 0, 1_000_000),
+                in.integer("rate_limit.user.burst", l.userBurst(), 1, 1_000_000),
+                in.integer("rate_limit.source.per_minute", l.sourcePerMinute(), 0, 1_000_000),
+                in.integer("rate_limit.source.burst", l.sourceBurst(), 1, 1_000_000),
+                in.integer("rate_limit.max_tracked_keys", l.rateLimitMaxTrackedKeys(), 1_000, 10_000_000),
+                in.integer("flush.max_delay_millis", (int) l.flushMaxDelayMillis(), 100, 3_600_000),
+                in.integer("flush.max_dirty_mutations", l.flushMaxDirtyMutations(), 1, 1_000_000),
+                in.integer("auth.max_concurrent", l.maxConcurrentAuth(), 1, 10_000),
+                in.integer("auth.admission_timeout_millis", (int) l.admissionTimeoutMillis(), 0, 60_000),
+                in.integer("shutdown.drain_timeout_millis", (int) l.drainTimeoutMillis(), 0, 60_000));
+        in.rejectUnknown();
+        return new ReplayShieldConfig(startup, live);
+    }
+
+    private static ReplayShieldException invalid(String source, int line, String message) {
+        return new ReplayShieldException(ErrorType.CONFIGURATION, source + ":" + line + ": " + message);
+    }
+
+    // 읽은 키를 지워가며 값 변환 - 마지막에 남은 키는 오타로 보고 거부
+    private static final class Reader {
+        private final Map<String, String> values;
+        private final String source;
+
+        Reader(Map<String, String> values, String source) {
+            this.values = values;
+            this.source = source;
+        }
+
+        String string(String key, String fallback) {
+            String value = values.remove(key);
+            if (value == null) {
+                return fallback;
+            }
+            if (value.isEmpty()) {
+                throw error(key, "must not be empty");
+            }
+            return value;
+        }
+
+        String choice(String key, String fallback, String... allowed) {
+            String value = string(key, fallback);
+            for (String candidate : allowed) {
+                if (candidate.equals(value)) {
+                    return value;
+                }
+            }
+            throw error(key, "must be one of " + String.join(", ", allowed));
+        }
+
+        boolean bool(String key, boolean fallback) {
+            String value = string(key, Boolean.toString(fallback));
+            return switch (value) {
+                case "true", "yes", "on" -> true;
+                case "false", "no", "off" -> false;
+                default -> throw error(key, "must be true or false");
+            };
+        }
+
+        int integer(String key, int fallback, int min, int max) {
+            String value = string(key, Integer.toString(fallback)).replace("_", "");
+            int parsed;
+            try {
+                parsed = Integer.parseInt(value);
+            } catch (NumberFormatException exception) {
+                throw error(key, "must be an integer");
+            }
+            if (parsed < min || parsed > max) {
+                throw error(key, "must be between " + min + " and " + max);
+            }
+            return parsed;
+        }
+
+        void rejectUnknown() {
+            if (!values.isEmpty()) {
+                throw new ReplayShieldException(ErrorType.CONFIGURATION,
+                        source + ": unknown key(s) " + String.join(", ", values.keySet()));
+            }
+        }
+
+        private ReplayShieldException error(String key, String message) {
+            return new ReplayShieldException(ErrorType.CONFIGURATION, source + ": " + key + " " + message);
+        }
+    }
+}
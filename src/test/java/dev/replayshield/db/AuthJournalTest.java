@@ -0,0 +1,98 @@
+package dev.replayshield.db;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AuthJournalTest {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void appendedEntriesAreReadBackInOrder() {
+        byte[] key = randomKey();
+        Path file = tempDir.resolve("secure.db.journal");
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            journal.append(entry(1, "alice", "h1"));
+            journal.append(entry(2, "bob", "h2"));
+        }
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            List<AuthJournal.Entry> entries = journal.readAll();
+            assertEquals(2, entries.size());
+            assertEquals(1L, entries.get(0).seq());
+            assertEquals("alice", entries.get(0).username());
+            assertArrayEquals("h2".getBytes(StandardCharsets.US_ASCII), entries.get(1).pwHash());
+        }
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws Exception {
+        byte[] key = randomKey();
+        Path file = tempDir.resolve("secure.db.journal");
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            journal.append(entry(1, "alice", "h1"));
+            journal.append(entry(2, "alice", "h2"));
+        }
+        long fullSize = Files.size(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(fullSize - 5);
+        }
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            assertEquals(1, journal.readAll().size());
+        }
+        // 잘린 레코드는 파일에서도 제거
+        assertEquals(1, new AuthJournal(key, file).readAll().size());
+    }
+
+    @Test
+    void discardThroughKeepsEntriesNewerThanPreviousGeneration() {
+        byte[] key = randomKey();
+        Path file = tempDir.resolve("secure.db.journal");
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            journal.append(entry(1, "alice", "h1"));
+            journal.append(entry(2, "bob", "h2"));
+            journal.append(entry(3, "alice", "h3"));
+            journal.discardThrough(1);
+            // 교체 후에도 같은 인스턴스로 계속 추가
+            journal.append(entry(4, "bob", "h4"));
+        }
+
+        try (AuthJournal journal = new AuthJournal(key, file)) {
+            List<AuthJournal.Entry> entries = journal.readAll();
+            assertEquals(3, entries.size());
+            assertEquals(2L, entries.get(0).seq());
+            assertEquals(4L, entries.get(2).seq());
+            journal.discardThrough(4);
+            assertEquals(0, journal.readAll().size());
+        }
+    }
+
+    private AuthJournal.Entry entry(long seq, String username, String hash) {
+        return new AuthJournal.Entry(seq, System.currentTimeMillis(), username,
+                hash.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private byte[] randomKey() {
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        return key;
+    }
+}
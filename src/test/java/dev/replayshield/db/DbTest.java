@@ -1,14 +1,18 @@
 package dev.replayshield.db;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Base64;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -44,6 +48,87 @@ class DbTest {
         }
     }
 
+    @Test
+    void migrationsAreVersionedAndCreateHotPathIndexes() throws Exception {
+        Path dbPath = tempDir.resolve("migrate.sqlite");
+
+        try (Connection conn = Db.open(dbPath)) {
+            assertEquals(Db.SCHEMA_VERSION, Db.schemaVersion(conn));
+            assertTrue(hasIndex(conn, "idx_pool_user_hash"));
+            assertTrue(hasIndex(conn, "idx_pool_user_last_use"));
+            assertTrue(hasIndex(conn, "idx_history_user_created"));
+        }
+
+        // 버전이 최신이면 다시 열어도 그대로
+        try (Connection conn = Db.open(dbPath)) {
+            assertEquals(Db.SCHEMA_VERSION, Db.schemaVersion(conn));
+        }
+    }
+
+    @Test
+    void totalChangesTracksWritesOnly() throws Exception {
+        try (Connection conn = Db.openInMemory(null)) {
+            long baseline = Db.totalChanges(conn);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT block_count FROM user_config WHERE username=?")) {
+                ps.setString(1, "nobody");
+                ps.executeQuery().close();
+            }
+            assertEquals(baseline, Db.totalChanges(conn));
+
+            insertUser(conn, "bob", 1);
+            assertEquals(baseline + 1, Db.totalChanges(conn));
+        }
+    }
+
+    @Test
+    void legacyBase64HashesAreConvertedToBlobs() throws Exception {
+        Path dbPath = tempDir.resolve("legacy.sqlite");
+        byte[] digest = new byte[32];
+        for (int i = 0; i < digest.length; i++) {
+            digest[i] = (byte) i;
+        }
+
+        // 버전 관리 이전 스키마 + Base64 TEXT 해시
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + dbPath.toAbsolutePath());
+                Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE user_config (username TEXT PRIMARY KEY, block_count INTEGER NOT NULL)");
+            st.execute("""
+                    CREATE TABLE password_pool (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT NOT NULL,
+                    pw_hash TEXT NOT NULL, pw_hint TEXT NOT NULL, hit_count INTEGER NOT NULL DEFAULT 0,
+                    blocked INTEGER NOT NULL DEFAULT 0, last_use INTEGER NOT NULL DEFAULT 0)
+                    """);
+            st.execute("""
+                    CREATE TABLE password_history (id INTEGER PRIMARY KEY AUTOINCREMENT, username TEXT NOT NULL,
+                    pw_hash TEXT NOT NULL, pw_hint TEXT NOT NULL, created_at INTEGER NOT NULL)
+                    """);
+            st.execute("INSERT INTO user_config VALUES('alice', 1)");
+            st.execute("INSERT INTO password_pool(username, pw_hash, pw_hint) VALUES('alice', '"
+                    + Base64.getEncoder().encodeToString(digest) + "', 'a*****z')");
+        }
+
+        try (Connection conn = Db.open(dbPath);
+                PreparedStatement ps = conn.prepareStatement(
+                        "SELECT typeof(pw_hash), pw_hash FROM password_pool WHERE username='alice'");
+                ResultSet rs = ps.executeQuery()) {
+            assertEquals(Db.SCHEMA_VERSION, Db.schemaVersion(conn));
+            assertTrue(rs.next());
+            assertEquals("blob", rs.getString(1));
+            assertArrayEquals(digest, rs.getBytes(2));
+            assertTrue(hasIndex(conn, "idx_pool_user_hash"));
+        }
+    }
+
+    private boolean hasIndex(Connection conn, String indexName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT name FROM sqlite_master WHERE type='index' AND name=?")) {
+            ps.setString(1, indexName);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
     private boolean hasTable(Connection conn, String tableName) throws SQLException {
         try (PreparedStatement ps = conn.prepareStatement(
                 "SELECT name FROM sqlite_master WHERE type='table' AND name=?")) {
@@ -0,0 +1,104 @@
+package dev.replayshield.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class SnapshotFlusherTest {
+
+    private static final long LONG_DELAY = 60_000;
+
+    @Test
+    void coalescesChangesUntilDelayElapses() throws Exception {
+        AtomicInteger persisted = new AtomicInteger();
+        try (SnapshotFlusher flusher = new SnapshotFlusher(persisted::incrementAndGet, 300, 1_000)) {
+            for (int i = 0; i < 10; i++) {
+                flusher.markDirty();
+            }
+            assertEquals(0, persisted.get());
+
+            // 10건이 저장 한 번으로 묶임
+            awaitCount(persisted, 1);
+            Thread.sleep(400);
+            assertEquals(1, persisted.get());
+            assertEquals(1L, flusher.flushCount());
+        }
+    }
+
+    @Test
+    void flushesAsSoonAsDirtyLimitIsReached() throws Exception {
+        AtomicInteger persisted = new AtomicInteger();
+        try (SnapshotFlusher flusher = new SnapshotFlusher(persisted::incrementAndGet, LONG_DELAY, 5)) {
+            flusher.markDirty(4);
+            Thread.sleep(100);
+            assertEquals(0, persisted.get());
+
+            flusher.markDirty();
+            awaitCount(persisted, 1);
+        }
+    }
+
+    @Test
+    void retriesAfterFailedPersist() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        Runnable failOnce = () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        try (SnapshotFlusher flusher = new SnapshotFlusher(failOnce, 50, 1_000)) {
+            flusher.markDirty();
+
+            // 실패한 저장은 다음 지연 주기에 다시 시도
+            awaitCount(attempts, 2);
+            assertEquals(1L, flusher.flushCount());
+        }
+    }
+
+    @Test
+    void reconfigureAppliesToPendingChanges() throws Exception {
+        AtomicInteger persisted = new AtomicInteger();
+        try (SnapshotFlusher flusher = new SnapshotFlusher(persisted::incrementAndGet, LONG_DELAY, 1_000)) {
+            flusher.markDirty();
+            Thread.sleep(100);
+            assertEquals(0, persisted.get());
+
+            // 대기 중인 작업 스레드가 줄어든 지연 시간으로 다시 판단
+            flusher.reconfigure(50, 1_000);
+            awaitCount(persisted, 1);
+
+            assertThrows(IllegalArgumentException.class, () -> flusher.reconfigure(0, 1_000));
+            assertThrows(IllegalArgumentException.class, () -> flusher.reconfigure(50, 0));
+        }
+    }
+
+    @Test
+    void closeFlushesPendingChanges() {
+        AtomicInteger persisted = new AtomicInteger();
+        SnapshotFlusher flusher = new SnapshotFlusher(persisted::incrementAndGet, LONG_DELAY, 1_000);
+        flusher.markDirty();
+        assertEquals(0, persisted.get());
+
+        flusher.close();
+        assertEquals(1, persisted.get());
+        assertEquals(1L, flusher.flushCount());
+
+        // 두 번째 close는 아무것도 하지 않음
+        flusher.close();
+        assertEquals(1, persisted.get());
+    }
+
+    private static void awaitCount(AtomicInteger counter, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (counter.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(counter.get() >= expected, "expected " + expected + " but was " + counter.get());
+        assertEquals(expected, counter.get());
+    }
+}
@@ -32,21 +32,25 @@ class EncryptDecryptTest {
     }
 
     @Test
-    void encryptDecryptFileRoundTrip() throws Exception {
+    void encryptBytesRoundTripsThroughFile() {
         byte[] key = randomKey();
         byte[] plain = new byte[256];
         random.nextBytes(plain);
 
-        Path plainFile = tempDir.resolve("plain.bin");
         Path encFile = tempDir.resolve("cipher.bin");
-        Path outFile = tempDir.resolve("roundtrip.bin");
+        EncryptDecrypt.encryptBytes(key, plain, encFile);
+        assertArrayEquals(plain, EncryptDecrypt.decryptToBytes(key, encFile));
+    }
 
-        Files.write(plainFile, plain);
-        EncryptDecrypt.encryptFile(key, plainFile, encFile);
-        EncryptDecrypt.decryptFile(key, encFile, outFile);
+    @Test
+    void legacySingleGcmFileStillDecrypts() throws Exception {
+        byte[] key = randomKey();
+        byte[] plain = new byte[256];
+        random.nextBytes(plain);
 
-        byte[] result = Files.readAllBytes(outFile);
-        assertArrayEquals(plain, result);
+        Path encFile = tempDir.resolve("legacy.bin");
+        Files.write(encFile, EncryptDecrypt.encrypt(key, plain));
+        assertArrayEquals(plain, EncryptDecrypt.decryptToBytes(key, encFile));
     }
 
     private byte[] randomKey() {
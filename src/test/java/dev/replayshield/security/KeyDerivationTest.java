@@ -0,0 +1,38 @@
+package dev.replayshield.security;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.security.SecureRandom;
+
+import org.junit.jupiter.api.Test;
+
+import dev.replayshield.util.ReplayShieldException;
+
+class KeyDerivationTest {
+
+    @Test
+    void saltFileKeepsIterationCount() {
+        KeyDerivation.Params params = KeyDerivation.newParams(150_000);
+
+        KeyDerivation.Params decoded = KeyDerivation.decode(KeyDerivation.encode(params));
+
+        assertEquals(150_000, decoded.iterations());
+        assertArrayEquals(params.salt(), decoded.salt());
+        assertArrayEquals(KeyDerivation.deriveKey("pw".toCharArray(), params),
+                KeyDerivation.deriveKey("pw".toCharArray(), decoded));
+    }
+
+    @Test
+    void rawSaltFileUsesLegacyIterationCount() {
+        byte[] legacy = new byte[32];
+        new SecureRandom().nextBytes(legacy);
+
+        KeyDerivation.Params decoded = KeyDerivation.decode(legacy);
+
+        assertEquals(KeyDerivation.DEFAULT_ITERATIONS, decoded.iterations());
+        assertArrayEquals(legacy, decoded.salt());
+        assertThrows(ReplayShieldException.class, () -> KeyDerivation.decode(new byte[20]));
+    }
+}
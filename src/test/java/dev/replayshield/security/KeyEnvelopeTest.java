@@ -0,0 +1,60 @@
+package dev.replayshield.security;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import dev.replayshield.util.ReplayShieldException;
+import dev.replayshield.util.ReplayShieldException.ErrorType;
+
+class KeyEnvelopeTest {
+
+    private static final int ITERATIONS = 1_000;
+
+    @Test
+    void rewrapKeepsDataKeyAndRejectsOldPassword() {
+        byte[] dataKey = KeyEnvelope.newDataKey();
+        KeyEnvelope first = KeyEnvelope.decode(
+                KeyEnvelope.wrap("old".toCharArray(), KeyDerivation.newParams(ITERATIONS), dataKey).encode());
+        assertFalse(first.isLegacy());
+        assertEquals(ITERATIONS, first.params().iterations());
+
+        // 암호 변경 = 같은 데이터 키를 새 암호로 봉인
+        byte[] unwrapped = first.unwrap("old".toCharArray());
+        KeyEnvelope second = KeyEnvelope.decode(
+                KeyEnvelope.wrap("new".toCharArray(), KeyDerivation.newParams(ITERATIONS), unwrapped).encode());
+
+        assertArrayEquals(dataKey, second.unwrap("new".toCharArray()));
+        ReplayShieldException wrong = assertThrows(ReplayShieldException.class,
+                () -> second.unwrap("old".toCharArray()));
+        assertEquals(ErrorType.ADMIN_AUTH, wrong.getType());
+    }
+
+    @Test
+    void legacySaltFileUsesDerivedKeyAsDataKey() {
+        KeyDerivation.Params params = KeyDerivation.newParams(ITERATIONS);
+        KeyEnvelope legacy = KeyEnvelope.decode(KeyDerivation.encode(params));
+
+        assertTrue(legacy.isLegacy());
+        assertArrayEquals(KeyDerivation.deriveKey("pw".toCharArray(), params), legacy.unwrap("pw".toCharArray()));
+    }
+
+    @Test
+    void tamperedKeyFileIsRejected() {
+        byte[] encoded = KeyEnvelope.wrap("pw".toCharArray(), KeyDerivation.newParams(ITERATIONS),
+                KeyEnvelope.newDataKey()).encode();
+        // 반복 횟수 변조 → AAD 불일치
+        encoded[7] ^= 1;
+        KeyEnvelope tampered = KeyEnvelope.decode(encoded);
+
+        assertThrows(ReplayShieldException.class, () -> tampered.unwrap("pw".toCharArray()));
+        assertThrows(ReplayShieldException.class,
+                () -> KeyEnvelope.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+}
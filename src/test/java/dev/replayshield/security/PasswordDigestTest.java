@@ -0,0 +1,51 @@
+package dev.replayshield.security;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class PasswordDigestTest {
+
+    @Test
+    void charDigestMatchesUtf8StringDigest() throws Exception {
+        // ASCII, 2/3바이트 문자, 서로게이트 쌍
+        for (String password : new String[] { "hunter2", "pässwörd", "비밀번호", "key🔑" }) {
+            byte[] expected = MessageDigest.getInstance("SHA-256")
+                    .digest(password.getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(expected, PasswordDigest.sha256(password.toCharArray()));
+            assertArrayEquals(expected, PasswordDigest.sha256(password.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void digestIsThirtyTwoBytes() {
+        assertEquals(PasswordDigest.LENGTH, PasswordDigest.sha256(new char[0]).length);
+    }
+
+    @Test
+    void pooledDigestsStayCorrectAcrossThreads() throws Exception {
+        byte[] input = "hunter2".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(input);
+        Thread[] threads = new Thread[8];
+        AtomicInteger mismatches = new AtomicInteger();
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    if (!MessageDigest.isEqual(expected, PasswordDigest.sha256(input))) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, mismatches.get());
+    }
+}
@@ -0,0 +1,202 @@
+package dev.replayshield.security;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.replayshield.util.ReplayShieldException;
+
+class SegmentedCipherFileTest {
+
+    private static final int SEGMENT = SegmentedCipherFile.DEFAULT_SEGMENT_SIZE;
+
+    private final SecureRandom random = new SecureRandom();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void roundTripAndRewriteOnlyChangedSegments() throws Exception {
+        byte[] key = randomKey();
+        byte[] plain = new byte[SEGMENT * 3 + 100];
+        random.nextBytes(plain);
+
+        Path plainFile = tempDir.resolve("plain.db");
+        Path encFile = tempDir.resolve("secure.db.enc");
+        Path outFile = tempDir.resolve("out.db");
+        Files.write(plainFile, plain);
+
+        SegmentedCipherFile file = SegmentedCipherFile.create(key, encFile);
+        assertEquals(4, file.write(plainFile));
+        assertTrue(SegmentedCipherFile.isSegmented(encFile));
+
+        // 두 번째 세그먼트의 1바이트만 변경
+        plain[SEGMENT + 10] ^= 1;
+        Files.write(plainFile, plain);
+        assertEquals(1, file.write(plainFile));
+
+        SegmentedCipherFile reopened = SegmentedCipherFile.open(key, encFile, outFile);
+        assertArrayEquals(plain, Files.readAllBytes(outFile));
+
+        // 변경 없으면 세그먼트 재봉인 없음
+        assertEquals(0, reopened.write(plainFile));
+
+        // decryptToBytes도 세그먼트 포맷 인식
+        assertArrayEquals(plain, EncryptDecrypt.decryptToBytes(key, encFile));
+    }
+
+    @Test
+    void growAndShrinkKeepsLayoutValid() throws Exception {
+        byte[] key = randomKey();
+        Path plainFile = tempDir.resolve("plain.db");
+        Path encFile = tempDir.resolve("secure.db.enc");
+        Path outFile = tempDir.resolve("out.db");
+
+        byte[] small = new byte[SEGMENT / 2];
+        random.nextBytes(small);
+        Files.write(plainFile, small);
+        SegmentedCipherFile file = SegmentedCipherFile.create(key, encFile);
+        file.write(plainFile);
+
+        byte[] large = new byte[SEGMENT * 2 + 7];
+        System.arraycopy(small, 0, large, 0, small.length);
+        Files.write(plainFile, large);
+        file.write(plainFile);
+        SegmentedCipherFile.open(key, encFile, outFile);
+        assertArrayEquals(large, Files.readAllBytes(outFile));
+
+        Files.write(plainFile, small);
+        file.write(plainFile);
+        SegmentedCipherFile.open(key, encFile, outFile);
+        assertArrayEquals(small, Files.readAllBytes(outFile));
+    }
+
+    @Test
+    void tamperedSegmentFailsAuthentication() throws Exception {
+        byte[] key = randomKey();
+        byte[] plain = new byte[SEGMENT * 2];
+        random.nextBytes(plain);
+        Path plainFile = tempDir.resolve("plain.db");
+        Path encFile = tempDir.resolve("secure.db.enc");
+        Files.write(plainFile, plain);
+        SegmentedCipherFile.create(key, encFile).write(plainFile);
+
+        try (FileChannel ch = FileChannel.open(encFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, 40);
+            b.put(0, (byte) (b.get(0) ^ 0x55)).rewind();
+            ch.write(b, 40);
+        }
+
+        assertThrows(ReplayShieldException.class,
+                () -> SegmentedCipherFile.open(key, encFile, tempDir.resolve("out.db")));
+    }
+
+    @Test
+    void eachWriteIsANewGenerationAndKeepsThePreviousOne() throws Exception {
+        byte[] key = randomKey();
+        Path encFile = tempDir.resolve("secure.db.enc");
+        byte[] first = new byte[SEGMENT * 2];
+        random.nextBytes(first);
+        byte[] second = first.clone();
+        second[5] ^= 1;
+
+        SegmentedCipherFile file = SegmentedCipherFile.create(key, encFile);
+        file.write(first);
+        assertEquals(1, file.generation());
+        // 바뀐 세그먼트만 봉인, 나머지는 암호문 복사
+        assertEquals(1, file.write(second));
+        assertEquals(2, file.generation());
+
+        assertEquals(0, leftoverTempFiles());
+        assertEquals(2, SegmentedCipherFile.currentGeneration(encFile));
+        assertArrayEquals(second, SegmentedCipherFile.load(key, encFile).plain());
+        Path previous = SegmentedCipherFile.previousFile(encFile);
+        SegmentedCipherFile.Loaded old = SegmentedCipherFile.load(key, previous);
+        assertEquals(1, old.file().generation());
+        assertArrayEquals(first, old.plain());
+    }
+
+    @Test
+    void unreadableLatestFallsBackToPreviousGeneration() throws Exception {
+        byte[] key = randomKey();
+        Path encFile = tempDir.resolve("secure.db.enc");
+        byte[] first = new byte[SEGMENT + 10];
+        random.nextBytes(first);
+        byte[] second = first.clone();
+        second[SEGMENT] ^= 1;
+
+        SegmentedCipherFile file = SegmentedCipherFile.create(key, encFile);
+        file.write(first);
+        file.write(second);
+        // 최신 파일 끝(헤더)이 잘린 상황
+        try (FileChannel ch = FileChannel.open(encFile, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 8);
+        }
+
+        SegmentedCipherFile.Loaded loaded = SegmentedCipherFile.load(key, encFile);
+        assertArrayEquals(first, loaded.plain());
+
+        // 복구 후 저장은 손상된 세대보다 뒤 번호, 정상 이전 세대는 그대로 유지
+        byte[] third = first.clone();
+        third[0] ^= 1;
+        loaded.file().write(third);
+        assertEquals(3, loaded.file().generation());
+        assertArrayEquals(third, SegmentedCipherFile.load(key, encFile).plain());
+        assertArrayEquals(first, SegmentedCipherFile.load(key, SegmentedCipherFile.previousFile(encFile)).plain());
+    }
+
+    @Test
+    void failedWriteLeavesCurrentSnapshotIntact() throws Exception {
+        byte[] key = randomKey();
+        Path encFile = tempDir.resolve("secure.db.enc");
+        byte[] plain = new byte[SEGMENT];
+        random.nextBytes(plain);
+        SegmentedCipherFile file = SegmentedCipherFile.create(key, encFile);
+        file.write(plain);
+
+        // 잘못된 키로 봉인 단계에서 실패 유도
+        SegmentedCipherFile broken = SegmentedCipherFile.create(new byte[7], encFile);
+        byte[] changed = plain.clone();
+        changed[0] ^= 1;
+        assertThrows(ReplayShieldException.class, () -> broken.write(changed));
+
+        assertEquals(1, broken.generation());
+        assertEquals(0, leftoverTempFiles());
+        assertArrayEquals(plain, SegmentedCipherFile.load(key, encFile).plain());
+    }
+
+    @Test
+    void writeLockIsExclusiveUntilReleased() {
+        Path encFile = tempDir.resolve("secure.db.enc");
+        try (SegmentedCipherFile.WriteLock lock = SegmentedCipherFile.lockForWrite(encFile)) {
+            assertTrue(Files.exists(SegmentedCipherFile.lockFile(encFile)));
+            // 같은 JVM의 두 번째 잠금은 대기 대신 실패 (다른 프로세스라면 해제까지 대기)
+            assertThrows(ReplayShieldException.class, () -> SegmentedCipherFile.lockForWrite(encFile));
+        }
+        SegmentedCipherFile.lockForWrite(encFile).close();
+    }
+
+    private long leftoverTempFiles() throws Exception {
+        try (var files = Files.list(tempDir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".tmp")).count();
+        }
+    }
+
+    private byte[] randomKey() {
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,123 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AuthAdmissionTest {
+
+    private final ServerMetrics metrics = new ServerMetrics(new AuthRateLimiter(0, 1, 0, 1));
+
+    @Test
+    void rejectsAtCapacityAndReleasesPermitAfterSuccess() throws Exception {
+        AuthAdmission admission = new AuthAdmission(1, metrics);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // permit 1개를 잡고 막힌 판정
+        CompletableFuture<HttpAuthServer.Response> blocked = CompletableFuture.supplyAsync(
+                () -> admission.admit(() -> {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "PASS";
+                }, 1_000));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        HttpAuthServer.Response busy = admission.admit(() -> "PASS", 50);
+        assertEquals(503, busy.status());
+        assertEquals(HttpAuthServer.BUSY, busy.body());
+        assertTrue(metrics.render().contains("replayshield_auth_busy_total 1"));
+
+        release.countDown();
+        assertEquals(new HttpAuthServer.Response(200, "PASS"), blocked.get(5, TimeUnit.SECONDS));
+        // 성공 후 permit 반납 → 대기 없이 입장
+        assertEquals(new HttpAuthServer.Response(200, "FAIL"), admission.admit(() -> "FAIL", 0));
+    }
+
+    @Test
+    void releasesPermitAfterFailure() {
+        AuthAdmission admission = new AuthAdmission(1, metrics);
+
+        assertEquals(500, admission.admit(() -> {
+            throw new SQLException("boom");
+        }, 0).status());
+        assertEquals(500, admission.admit(() -> {
+            throw new IllegalStateException("boom");
+        }, 0).status());
+        // 실패 후에도 permit 반납
+        assertEquals(new HttpAuthServer.Response(429, PamAuthHandler.RATE_LIMITED),
+                admission.admit(() -> PamAuthHandler.RATE_LIMITED, 0));
+    }
+
+    @Test
+    void resizeTakesEffectWithoutDroppingRunningCalls() {
+        AuthAdmission admission = new AuthAdmission(1, metrics);
+        admission.resize(0);
+        assertEquals(503, admission.admit(() -> "PASS", 0).status());
+
+        admission.resize(2);
+        assertEquals(200, admission.admit(() -> "PASS", 0).status());
+    }
+
+    @Test
+    void drainWaitsForInFlightRequestsAndRejectsNewOnes() throws Exception {
+        AuthAdmission admission = new AuthAdmission(1, metrics);
+        assertTrue(admission.enter());
+        assertTrue(admission.enter());
+
+        admission.startDraining();
+        assertFalse(admission.enter());
+        assertEquals(503, admission.reject().status());
+
+        // 제한 시간 안에 끝나지 않으면 남은 수
+        assertEquals(2, admission.awaitDrain(20));
+
+        admission.leave();
+        CompletableFuture<Integer> drained = CompletableFuture.supplyAsync(() -> admission.awaitDrain(5_000));
+        Thread.sleep(50);
+        admission.leave();
+        assertEquals(Integer.valueOf(0), drained.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void abandonedRequestsGetBusyOnceClosed() throws Exception {
+        AuthAdmission admission = new AuthAdmission(2, metrics);
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch closed = new CountDownLatch(1);
+
+        // drain 제한 시간을 넘긴 요청 - 판정 중에 엔진/DB가 닫혀 실패
+        CompletableFuture<HttpAuthServer.Response> abandoned = CompletableFuture.supplyAsync(
+                () -> admission.admit(() -> {
+                    entered.countDown();
+                    try {
+                        closed.await();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new SQLException("database is closed");
+                }, 1_000));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        admission.startDraining();
+        admission.close();
+        closed.countDown();
+
+        assertEquals(new HttpAuthServer.Response(503, HttpAuthServer.BUSY), abandoned.get(5, TimeUnit.SECONDS));
+        // 닫힌 뒤 입장하는 요청은 판정하지 않음
+        assertEquals(503, admission.admit(() -> {
+            throw new AssertionError("must not run");
+        }, 0).status());
+        assertTrue(metrics.render().contains("replayshield_auth_errors_total 0"));
+    }
+}
@@ -0,0 +1,47 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class AuthRateLimiterTest {
+
+    @Test
+    void userBucketAllowsBurstThenLimits() {
+        AuthRateLimiter limiter = new AuthRateLimiter(1, 3, 0, 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("alice", null));
+        }
+        assertEquals(AuthRateLimiter.Decision.USER_LIMITED, limiter.check("alice", null));
+        // 다른 사용자는 영향 없음
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("bob", null));
+    }
+
+    @Test
+    void sourceBucketSpansUsernames() {
+        AuthRateLimiter limiter = new AuthRateLimiter(0, 1, 1, 2);
+
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("a", "203.0.113.5"));
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("b", "203.0.113.5"));
+        assertEquals(AuthRateLimiter.Decision.SOURCE_LIMITED, limiter.check("c", "203.0.113.5"));
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("c", "198.51.100.7"));
+    }
+
+    @Test
+    void reconfigureAppliesNewLimitsToExistingBuckets() {
+        AuthRateLimiter limiter = new AuthRateLimiter(1, 1, 0, 1);
+
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("alice", null));
+        assertEquals(AuthRateLimiter.Decision.USER_LIMITED, limiter.check("alice", null));
+
+        // 제한 해제 후 다시 강화
+        limiter.reconfigure(0, 1, 0, 1, 1_000);
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("alice", null));
+        limiter.reconfigure(60, 2, 0, 1, 1_000);
+        assertEquals(60, limiter.userPerMinute());
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("bob", null));
+        assertEquals(AuthRateLimiter.Decision.ALLOWED, limiter.check("bob", null));
+        assertEquals(AuthRateLimiter.Decision.USER_LIMITED, limiter.check("bob", null));
+    }
+}
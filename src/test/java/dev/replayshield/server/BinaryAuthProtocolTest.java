@@ -0,0 +1,59 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class BinaryAuthProtocolTest {
+
+    @Test
+    void encodedRequestDecodesWithPasswordInPlace() {
+        byte[] password = "pässwörd".getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = BinaryAuthProtocol.encode("alice", password, "10.0.0.1");
+        byte[] frame = Arrays.copyOfRange(encoded, 2, encoded.length);
+        assertEquals(frame.length, ((encoded[0] & 0xFF) << 8) | (encoded[1] & 0xFF));
+
+        BinaryAuthProtocol.Request request = BinaryAuthProtocol.decode(frame, frame.length);
+        assertEquals("alice", request.username());
+        assertEquals("10.0.0.1", request.rhost());
+        assertArrayEquals(password, Arrays.copyOfRange(frame, request.passwordOffset(),
+                request.passwordOffset() + request.passwordLength()));
+    }
+
+    @Test
+    void emptyRhostDecodesAsNull() {
+        byte[] encoded = BinaryAuthProtocol.encode("bob", new byte[] { 1, 2, 3 }, null);
+        byte[] frame = Arrays.copyOfRange(encoded, 2, encoded.length);
+        assertNull(BinaryAuthProtocol.decode(frame, frame.length).rhost());
+    }
+
+    @Test
+    void malformedFramesAreRejected() {
+        byte[] encoded = BinaryAuthProtocol.encode("alice", new byte[] { 1, 2, 3 }, "host");
+        byte[] frame = Arrays.copyOfRange(encoded, 2, encoded.length);
+
+        // 잘린 프레임
+        assertNull(BinaryAuthProtocol.decode(frame, frame.length - 1));
+        // 알 수 없는 버전
+        byte[] badVersion = frame.clone();
+        badVersion[0] = 9;
+        assertNull(BinaryAuthProtocol.decode(badVersion, badVersion.length));
+        // PW 길이가 프레임을 넘어섬
+        byte[] badLength = frame.clone();
+        badLength[1 + 1 + 5] = (byte) 0x7F;
+        assertNull(BinaryAuthProtocol.decode(badLength, badLength.length));
+    }
+
+    @Test
+    void replyCodesRoundTrip() {
+        for (String result : new String[] { "PASS", "FAIL", PamAuthHandler.RATE_LIMITED, HttpAuthServer.BUSY }) {
+            assertEquals(result, BinaryAuthProtocol.replyName(BinaryAuthProtocol.reply(result)));
+        }
+        assertEquals("ERROR", BinaryAuthProtocol.replyName(BinaryAuthProtocol.reply("")));
+    }
+}
@@ -0,0 +1,160 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.replayshield.db.Db;
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.security.EncryptDecrypt;
+
+class ConcurrentAuthTest {
+
+    private static final int USERS = 8;
+    private static final int THREADS_PER_USER = 4;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    private static final int POOL_SIZE = 6;
+    private static final int BLOCK_COUNT = 2;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void stripedEngineLosesNoUpdates() throws Exception {
+        runConcurrentLogins(AuthEngine.Kind.STRIPED);
+    }
+
+    @Test
+    void singleWriterEngineLosesNoUpdates() throws Exception {
+        runConcurrentLogins(AuthEngine.Kind.SINGLE_WRITER);
+    }
+
+    @Test
+    void inMemoryEngineLosesNoUpdates() throws Exception {
+        runConcurrentLogins(AuthEngine.Kind.MEMORY);
+    }
+
+    private void runConcurrentLogins(AuthEngine.Kind engineKind) throws Exception {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Path encFile = tempDir.resolve("secure.db.enc");
+        Path journalFile = tempDir.resolve("secure.db.journal");
+        createDb(key, encFile);
+
+        AtomicInteger[] passes = new AtomicInteger[USERS];
+        for (int u = 0; u < USERS; u++) {
+            passes[u] = new AtomicInteger();
+        }
+
+        try (ResidentDb residentDb = ResidentDb.open(key, encFile, journalFile, PamAuthHandler::replay);
+                AuthEngine engine = engineKind.create(residentDb)) {
+            PamAuthHandler handler = new PamAuthHandler(engine);
+            ExecutorService pool = Executors.newFixedThreadPool(USERS * THREADS_PER_USER);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int u = 0; u < USERS; u++) {
+                for (int t = 0; t < THREADS_PER_USER; t++) {
+                    int user = u;
+                    int offset = t;
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                            String password = "pw" + ((offset + i) % POOL_SIZE);
+                            if ("PASS".equals(handler.authenticate(username(user), password.getBytes(StandardCharsets.UTF_8)))) {
+                                passes[user].incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+
+            residentDb.execute(conn -> {
+                assertConsistent(conn, passes);
+                return null;
+            });
+        }
+
+        // 저장된 스냅샷에도 같은 결과가 남아 있어야 함
+        try (Connection conn = Db.openInMemory(EncryptDecrypt.decryptToBytes(key, encFile))) {
+            assertConsistent(conn, passes);
+        }
+    }
+
+    private void assertConsistent(Connection conn, AtomicInteger[] passes) throws SQLException {
+        for (int u = 0; u < USERS; u++) {
+            String username = username(u);
+            int expected = passes[u].get();
+            assertEquals(expected, queryInt(conn, "SELECT COUNT(*) FROM password_history WHERE username=?", username));
+            assertEquals(expected,
+                    queryInt(conn, "SELECT COALESCE(SUM(hit_count), 0) FROM password_pool WHERE username=?", username));
+            assertEquals(BLOCK_COUNT,
+                    queryInt(conn, "SELECT COUNT(*) FROM password_pool WHERE username=? AND blocked=1", username));
+        }
+    }
+
+    private void createDb(byte[] key, Path encFile) throws Exception {
+        try (Connection conn = Db.openInMemory(null)) {
+            for (int u = 0; u < USERS; u++) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO user_config(username, block_count) VALUES(?, ?)")) {
+                    ps.setString(1, username(u));
+                    ps.setInt(2, BLOCK_COUNT);
+                    ps.executeUpdate();
+                }
+                for (int p = 0; p < POOL_SIZE; p++) {
+                    try (PreparedStatement ps = conn.prepareStatement(
+                            "INSERT INTO password_pool(username, pw_hash, pw_hint, hit_count, blocked) VALUES(?, ?, ?, 0, 0)")) {
+                        ps.setString(1, username(u));
+                        ps.setBytes(2, hash("pw" + p));
+                        ps.setString(3, "p****" + p);
+                        ps.executeUpdate();
+                    }
+                }
+            }
+            EncryptDecrypt.encryptBytes(key, Db.serialize(conn), encFile);
+        }
+    }
+
+    private int queryInt(Connection conn, String sql, String username) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private static String username(int index) {
+        return "user" + index;
+    }
+
+    private static byte[] hash(String password) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        return md.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,107 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.replayshield.db.Db;
+import dev.replayshield.db.ResidentDb;
+import dev.replayshield.security.EncryptDecrypt;
+import dev.replayshield.security.SegmentedCipherFile;
+
+class FilteredAuthEngineTest {
+
+    private static final int USERS = 200;
+    private static final int POOL_SIZE = 5;
+    private static final String PASS = "PASS";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void neverRejectsRegisteredCredentialsIncludingAfterExternalReload() throws Exception {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        Path encFile = tempDir.resolve("secure.db.enc");
+        try (Connection conn = Db.openInMemory(null)) {
+            addUsers(conn, "user", USERS);
+            EncryptDecrypt.encryptBytes(key, Db.serialize(conn), encFile);
+        }
+
+        // 필터를 통과한 요청만 세는 판정 엔진 - 통과하면 항상 PASS
+        AtomicInteger forwarded = new AtomicInteger();
+        AuthEngine counting = (username, pwHash) -> {
+            forwarded.incrementAndGet();
+            return PASS;
+        };
+        try (ResidentDb residentDb = ResidentDb.open(key, encFile, tempDir.resolve("secure.db.journal"),
+                PamAuthHandler::replay);
+                FilteredAuthEngine engine = new FilteredAuthEngine(counting, residentDb)) {
+            assertAllPass(engine, "user", USERS);
+
+            // 등록되지 않은 요청은 대부분 엔진까지 가지 않음 (오탐률 1%)
+            forwarded.set(0);
+            for (int i = 0; i < 1_000; i++) {
+                engine.authenticate("scanner" + i, hash("guess" + i));
+                engine.authenticate("user" + (i % USERS), hash("guess" + i));
+            }
+            assertTrue(forwarded.get() < 100, "forwarded " + forwarded.get() + " of 2000 unknown requests");
+
+            // manage CLI처럼 다른 경로로 사용자/패스워드를 추가 - 다음 요청에서 재적재되며 필터도 재구성
+            try (Connection conn = Db.openInMemory(EncryptDecrypt.decryptToBytes(key, encFile))) {
+                addUsers(conn, "added", USERS);
+                try (SegmentedCipherFile.WriteLock lock = SegmentedCipherFile.lockForWrite(encFile)) {
+                    EncryptDecrypt.encryptBytes(key, Db.serialize(conn), encFile);
+                }
+            }
+            assertAllPass(engine, "added", USERS);
+            assertAllPass(engine, "user", USERS);
+        }
+    }
+
+    private static void assertAllPass(AuthEngine engine, String prefix, int users) throws Exception {
+        for (int u = 0; u < users; u++) {
+            for (int p = 0; p < POOL_SIZE; p++) {
+                assertEquals(PASS, engine.authenticate(prefix + u, hash(prefix + u + "-pw" + p)));
+            }
+        }
+    }
+
+    private static void addUsers(Connection conn, String prefix, int users)
+            throws SQLException, NoSuchAlgorithmException {
+        for (int u = 0; u < users; u++) {
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO user_config(username, block_count) VALUES(?, ?)")) {
+                ps.setString(1, prefix + u);
+                ps.setInt(2, 2);
+                ps.executeUpdate();
+            }
+            for (int p = 0; p < POOL_SIZE; p++) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "INSERT INTO password_pool(username, pw_hash, pw_hint, hit_count, blocked) VALUES(?, ?, ?, 0, 0)")) {
+                    ps.setString(1, prefix + u);
+                    ps.setBytes(2, hash(prefix + u + "-pw" + p));
+                    ps.setString(3, "p****" + p);
+                    ps.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static byte[] hash(String password) throws NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        return md.digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+class FormParserTest {
+
+    @Test
+    void decodesFieldsIntoBuffer() throws IOException {
+        FormParser form = new FormParser();
+        String body = "username=al%69ce&password=p%C3%A4ss+w%26rd&rhost=10.0.0.1&extra=ignored";
+
+        assertEquals(FormParser.Status.OK, form.parse(stream(body), body.length()));
+        assertEquals("alice", form.username());
+        assertEquals("10.0.0.1", form.rhost());
+        assertArrayEquals("päss w&rd".getBytes(StandardCharsets.UTF_8), password(form));
+    }
+
+    @Test
+    void clearZeroesDecodedValues() throws IOException {
+        FormParser form = new FormParser();
+        String body = "username=bob&password=secret";
+        form.parse(stream(body), -1);
+        int end = form.passwordOffset() + form.passwordLength();
+
+        form.clear();
+
+        byte[] zeros = new byte[end];
+        assertArrayEquals(zeros, Arrays.copyOf(form.buffer(), end));
+        assertNull(form.username());
+        assertFalse(form.hasPassword());
+    }
+
+    @Test
+    void oversizedBodyIsRejected() throws IOException {
+        FormParser form = new FormParser();
+        assertEquals(FormParser.Status.TOO_LARGE, form.parse(stream(""), FormParser.MAX_BODY_BYTES + 1L));
+
+        // 길이를 모르는 본문도 한도까지만 읽음
+        String body = "password=" + "a".repeat(FormParser.MAX_BODY_BYTES);
+        assertEquals(FormParser.Status.TOO_LARGE, form.parse(stream(body), -1));
+    }
+
+    @Test
+    void malformedInputIsRejected() throws IOException {
+        FormParser form = new FormParser();
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream("username=a%zz"), -1));
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream("username=a%4"), -1));
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream("username=a&username=b"), -1));
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream("=x"), -1));
+        // 선언한 길이보다 짧은 본문
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream("username=a"), 20));
+
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i <= FormParser.MAX_FIELDS; i++) {
+            many.append("f").append(i).append("=x&");
+        }
+        assertEquals(FormParser.Status.MALFORMED, form.parse(stream(many.toString()), -1));
+    }
+
+    @Test
+    void readsNoFurtherThanDeclaredLength() throws IOException {
+        FormParser form = new FormParser();
+        InputStream in = stream("username=bob&password=pwNEXT");
+        assertEquals(FormParser.Status.OK, form.parse(in, "username=bob&password=pw".length()));
+        assertArrayEquals("pw".getBytes(StandardCharsets.US_ASCII), password(form));
+        assertEquals('N', in.read());
+    }
+
+    @Test
+    void parsesBodyInPlaceFromDirectBuffer() {
+        byte[] raw = "HEADusername=bob&password=p%21w".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buf = ByteBuffer.allocateDirect(64).put(raw);
+        ByteBuffer body = buf.duplicate();
+        body.limit(raw.length).position(4);
+
+        FormParser form = new FormParser();
+        assertEquals(FormParser.Status.OK, form.parse(body));
+        assertEquals("bob", form.username());
+        assertArrayEquals("p!w".getBytes(StandardCharsets.US_ASCII), password(form));
+        // 전송 버퍼 위치는 그대로
+        assertEquals(4, body.position());
+
+        ByteBuffer tooLarge = ByteBuffer.allocateDirect(FormParser.MAX_BODY_BYTES + 1);
+        assertEquals(FormParser.Status.TOO_LARGE, form.parse(tooLarge));
+    }
+
+    @Test
+    void poolReusesZeroedParsers() throws IOException {
+        FormParser.Pool pool = new FormParser.Pool(FormParser.MAX_BODY_BYTES, 1);
+        FormParser first = pool.acquire();
+        assertEquals(FormParser.Status.OK, first.parse(stream("username=bob&password=secret"), -1));
+        byte[] buffer = first.buffer();
+        pool.release(first);
+
+        // 반납된 버퍼는 0으로 지워져 있고 같은 인스턴스가 다시 나옴
+        assertArrayEquals(new byte[buffer.length], buffer);
+        assertSame(first, pool.acquire());
+
+        // 풀 용량을 넘는 반납분은 버림
+        pool.release(new FormParser());
+        pool.release(new FormParser());
+        assertEquals(1, pool.idleCount());
+    }
+
+    private static byte[] password(FormParser form) {
+        return Arrays.copyOfRange(form.buffer(), form.passwordOffset(),
+                form.passwordOffset() + form.passwordLength());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.US_ASCII));
+    }
+}
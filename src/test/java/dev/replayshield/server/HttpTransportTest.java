@@ -0,0 +1,394 @@
+package dev.replayshield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.replayshield.util.ReplayShieldException;
+
+class HttpTransportTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+    // true면 drain 중인 서버처럼 본문을 읽지 않고 503
+    private volatile boolean draining;
+
+    // password가 "ok"면 PASS
+    private final AuthEndpoint endpoint = new AuthEndpoint() {
+        @Override
+        public HttpAuthServer.Response processAuth(InputStream body, long contentLength) {
+            if (draining) {
+                return new HttpAuthServer.Response(503, HttpAuthServer.BUSY);
+            }
+            FormParser form = new FormParser();
+            try {
+                return answer(form, form.parse(body, contentLength));
+            } catch (IOException exception) {
+                return new HttpAuthServer.Response(500, "");
+            } finally {
+                form.clear();
+            }
+        }
+
+        @Override
+        public HttpAuthServer.Response processAuth(ByteBuffer body) {
+            FormParser form = new FormParser();
+            try {
+                return answer(form, form.parse(body));
+            } finally {
+                form.clear();
+            }
+        }
+
+        private HttpAuthServer.Response answer(FormParser form, FormParser.Status status) {
+            requests.incrementAndGet();
+            if (form.username() != null) {
+                usernames.add(form.username());
+            }
+            if (status == FormParser.Status.TOO_LARGE) {
+                return new HttpAuthServer.Response(413, PamAuthHandler.TOO_LARGE);
+            }
+            if (status != FormParser.Status.OK) {
+                return new HttpAuthServer.Response(400, PamAuthHandler.BAD_REQUEST);
+            }
+            String password = new String(form.buffer(), form.passwordOffset(), form.passwordLength(),
+                    StandardCharsets.UTF_8);
+            return new HttpAuthServer.Response(200, "ok".equals(password) ? "PASS" : "FAIL");
+        }
+
+        @Override
+        public String renderMetrics() {
+            return "";
+        }
+    };
+
+    @Test
+    void pipelinedRequestsShareOneConnection() throws IOException {
+        for (HttpTransport.Kind kind : HttpTransport.Kind.values()) {
+            SocketAddress address = UnixDomainSocketAddress.of(tempDir.resolve(kind.configName() + ".sock"));
+            requests.set(0);
+            withTransport(kind, address, () -> pipelined(address));
+            assertEquals(4, requests.get(), kind.configName());
+        }
+    }
+
+    @Test
+    void nioTransportServesTcp() throws IOException {
+        SocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        NioHttpTransport transport = new NioHttpTransport(address, endpoint, executor);
+        transport.start();
+        try {
+            pipelined(transport.localAddress());
+        } finally {
+            transport.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void pipeAnswersEachLineInOrder() throws IOException {
+        for (HttpTransport.Kind kind : HttpTransport.Kind.values()) {
+            Path socket = tempDir.resolve(kind.configName() + "-pipe.sock");
+            withTransport(kind, UnixDomainSocketAddress.of(socket), () -> {
+                String input = "alice\tok\nbob\twrong\t10.0.0.2\nmalformed-line\ncarol\tok\r\n";
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                long answered = KeepAliveAuthClient.pipe(socket,
+                        new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                        new PrintStream(output, true, StandardCharsets.UTF_8));
+
+                assertEquals(3, answered);
+                assertEquals("PASS\nFAIL\nPASS\n",
+                        output.toString(StandardCharsets.UTF_8).replace("\r\n", "\n"));
+            });
+        }
+    }
+
+    @Test
+    void benchmarkCountsEveryResponse() throws IOException {
+        for (HttpTransport.Kind kind : HttpTransport.Kind.values()) {
+            SocketAddress address = UnixDomainSocketAddress.of(tempDir.resolve(kind.configName() + "-bench.sock"));
+            withTransport(kind, address, () -> {
+                AuthBenchmark.Result result = AuthBenchmark.run(address, "alice",
+                        "ok".getBytes(StandardCharsets.US_ASCII), 4, 50);
+                assertEquals(200, result.requests());
+                assertEquals(Long.valueOf(200), result.responses().get("PASS"));
+            });
+        }
+    }
+
+    @Test
+    void benchmarkSpreadsRequestsOverUsers() throws IOException {
+        SocketAddress address = UnixDomainSocketAddress.of(tempDir.resolve("users-bench.sock"));
+        withTransport(HttpTransport.Kind.NIO, address, () -> {
+            AuthBenchmark.Result result = AuthBenchmark.run(address, AuthBenchmark.usernames("bench", 5),
+                    "ok".getBytes(StandardCharsets.US_ASCII), 2, 10);
+            assertEquals(20, result.requests());
+        });
+        assertEquals(Set.of("bench-0", "bench-1", "bench-2", "bench-3", "bench-4"), usernames);
+    }
+
+    @Test
+    void stopAcceptingKeepsOpenConnectionsServing() throws IOException {
+        byte[] ok = "ok".getBytes(StandardCharsets.US_ASCII);
+        for (HttpTransport.Kind kind : HttpTransport.Kind.values()) {
+            Path socket = tempDir.resolve(kind.configName() + "-drain.sock");
+            ExecutorService executor = Executors.newCachedThreadPool();
+            HttpTransport transport = kind.bind(UnixDomainSocketAddress.of(socket), endpoint, executor);
+            transport.start();
+            try (KeepAliveAuthClient client = new KeepAliveAuthClient(socket)) {
+                assertEquals("PASS", client.authenticate("alice", ok, 0, ok.length, null));
+
+                transport.stopAccepting();
+                // 이미 열린 연결은 종료(drain) 중에도 응답
+                assertEquals("PASS", client.authenticate("alice", ok, 0, ok.length, null));
+                assertFalse(Files.exists(socket), kind.configName());
+                assertThrows(ReplayShieldException.class, () -> new KeepAliveAuthClient(socket).close());
+            } finally {
+                transport.stop(0);
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    void unixListenerRoundTripsRawHttp() throws IOException {
+        Path socket = tempDir.resolve("raw.sock");
+        withTransport(HttpTransport.Kind.JDK, UnixDomainSocketAddress.of(socket), () -> {
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                String reply = exchange(channel, post("username=alice&password=ok", "keep-alive"));
+                assertTrue(reply.startsWith("HTTP/1.1 200 "), reply);
+                assertTrue(reply.endsWith("\r\n\r\nPASS"), reply);
+            }
+
+            // 한도를 넘는 선언 길이는 본문을 읽지 않고 413 후 연결 종료
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                String head = "POST /auth HTTP/1.1\r\nContent-Length: " + (endpoint.maxBodyBytes() + 1)
+                        + "\r\n\r\n";
+                String reply = exchange(channel, head);
+                assertTrue(reply.startsWith("HTTP/1.1 413 "), reply);
+                assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+            }
+        });
+    }
+
+    @Test
+    void drainRejectionClosesConnectionInsteadOfParsingBodyAsHead() throws IOException {
+        Path socket = tempDir.resolve("drain-reject.sock");
+        withTransport(HttpTransport.Kind.JDK, UnixDomainSocketAddress.of(socket), () -> {
+            draining = true;
+            try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                String reply = exchange(channel, post("username=alice&password=ok", "keep-alive"));
+                assertTrue(reply.startsWith("HTTP/1.1 503 "), reply);
+                assertTrue(reply.contains("Connection: close"), reply);
+                // 읽지 않은 본문이 다음 요청으로 해석되지 않음 (400 없이 종료)
+                assertEquals(-1, channel.read(ByteBuffer.allocate(64)));
+            }
+        });
+    }
+
+    @Test
+    void jdkTransportBoundsTcpBody() throws IOException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        JdkHttpTransport transport = new JdkHttpTransport(new InetSocketAddress("127.0.0.1", 0), endpoint,
+                executor);
+        transport.start();
+        try {
+            try (SocketChannel channel = SocketChannel.open(transport.localAddress())) {
+                String reply = exchange(channel, post("username=alice&password=ok", "close"));
+                assertTrue(reply.startsWith("HTTP/1.1 200 "), reply);
+            }
+            try (SocketChannel channel = SocketChannel.open(transport.localAddress())) {
+                String head = "POST /auth HTTP/1.1\r\nHost: x\r\nContent-Length: " + (endpoint.maxBodyBytes() + 1)
+                        + "\r\nConnection: close\r\n\r\n";
+                assertTrue(exchange(channel, head).startsWith("HTTP/1.1 413 "));
+            }
+            // 길이 없는 chunked 본문도 한도까지만 읽음
+            try (SocketChannel channel = SocketChannel.open(transport.localAddress())) {
+                String body = "username=" + "a".repeat(endpoint.maxBodyBytes());
+                String head = "POST /auth HTTP/1.1\r\nHost: x\r\nTransfer-Encoding: chunked\r\n"
+                        + "Connection: close\r\n\r\n" + Integer.toHexString(body.length()) + "\r\n" + body
+                        + "\r\n0\r\n\r\n";
+                assertTrue(exchange(channel, head).startsWith("HTTP/1.1 413 "));
+            }
+        } finally {
+            transport.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private static String post(String body, String connection) {
+        return "POST /auth HTTP/1.1\r\nHost: x\r\nContent-Length: " + body.length() + "\r\nConnection: "
+                + connection + "\r\n\r\n" + body;
+    }
+
+    // 요청을 보내고 응답 하나(헤더 + Content-Length 본문)를 읽음
+    private static String exchange(SocketChannel channel, String request) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        ByteBuffer in = ByteBuffer.allocate(256);
+        while (true) {
+            String text = reply.toString(StandardCharsets.US_ASCII);
+            int headEnd = text.indexOf("\r\n\r\n");
+            if (headEnd >= 0) {
+                int at = text.toLowerCase().indexOf("content-length:");
+                int length = at < 0 ? 0
+                        : Integer.parseInt(text.substring(at + 15, text.indexOf("\r\n", at)).trim());
+                if (text.length() >= headEnd + 4 + length) {
+                    return text;
+                }
+            }
+            in.clear();
+            if (channel.read(in) < 0) {
+                return text;
+            }
+            reply.write(in.array(), 0, in.position());
+        }
+    }
+
+    @Test
+    void unixListenerClosesStalledConnections() throws IOException {
+        Path socket = tempDir.resolve("stall.sock");
+        ExecutorService executor = Executors.newCachedThreadPool();
+        UnixSocketListener listener = new UnixSocketListener(socket, endpoint, executor, 200, 1_000);
+        listener.start();
+        try {
+            // 헤더 중간에서 멈춤 → 유휴 제한
+            try (SocketChannel stalled = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                stalled.write(ByteBuffer.wrap("POST /auth HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII)));
+                assertEquals(-1, stalled.read(ByteBuffer.allocate(64)));
+            }
+
+            // 조금씩 계속 보내도 요청 제한 시간이 지나면 닫힘 (slowloris)
+            try (SocketChannel slow = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+                long started = System.currentTimeMillis();
+                boolean closed = false;
+                while (!closed && System.currentTimeMillis() - started < 10_000) {
+                    try {
+                        slow.write(ByteBuffer.wrap(new byte[] { 'X' }));
+                        Thread.sleep(100);
+                    } catch (IOException exception) {
+                        closed = true;
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                assertTrue(closed);
+            }
+
+            // 정상 요청은 그대로 처리
+            byte[] ok = "ok".getBytes(StandardCharsets.US_ASCII);
+            try (KeepAliveAuthClient client = new KeepAliveAuthClient(socket)) {
+                assertEquals("PASS", client.authenticate("alice", ok, 0, ok.length, null));
+            }
+        } finally {
+            listener.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void headIsParsedInPlaceFromTransportBuffer() {
+        HttpWire.Head head = parse("POST /auth?x=1 HTTP/1.1\r\nHost: a\r\nContent-Length:  42 \r\n"
+                + "Connection: Close\r\n\r\nbody");
+        assertEquals("POST", head.method());
+        assertEquals("/auth", head.path());
+        assertEquals(42L, head.contentLength());
+        assertFalse(head.keepAlive());
+
+        HttpWire.Head legacy = parse("get /metrics HTTP/1.0\r\nconnection: keep-alive\r\n\r\n");
+        assertEquals("GET", legacy.method());
+        assertEquals("/metrics", legacy.path());
+        assertEquals(-1L, legacy.contentLength());
+        assertTrue(legacy.keepAlive());
+
+        assertEquals("", parse("POST /other HTTP/1.1\r\nContent-Length: -1\r\n\r\n").path());
+        assertEquals(-1L, parse("POST /auth HTTP/1.1\r\nContent-Length: -1\r\n\r\n").contentLength());
+        assertNull(parse("POST /auth\r\n\r\n"));
+    }
+
+    private static HttpWire.Head parse(String raw) {
+        byte[] bytes = raw.getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buf = ByteBuffer.allocateDirect(256).put(bytes);
+        return HttpWire.parseHead(buf, raw.indexOf("\r\n\r\n") + 4);
+    }
+
+    @Test
+    void percentileUsesNearestRank() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i + 1;
+        }
+        assertEquals(50, AuthBenchmark.percentile(sorted, 50));
+        assertEquals(99, AuthBenchmark.percentile(sorted, 99));
+        assertEquals(0, AuthBenchmark.percentile(new long[0], 99));
+    }
+
+    private interface IoBlock {
+        void run() throws IOException;
+    }
+
+    private void withTransport(HttpTransport.Kind kind, SocketAddress address, IoBlock block) throws IOException {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpTransport transport = kind.bind(address, endpoint, executor);
+        transport.start();
+        try {
+            block.run();
+        } finally {
+            transport.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void pipelined(SocketAddress address) throws IOException {
+        byte[] ok = "ok".getBytes(StandardCharsets.US_ASCII);
+        byte[] bad = "nope & =".getBytes(StandardCharsets.US_ASCII);
+        try (KeepAliveAuthClient client = new KeepAliveAuthClient(address)) {
+            client.send("alice", ok, 0, ok.length, null);
+            client.send("alice", bad, 0, bad.length, "10.0.0.1");
+            client.send("bob", ok, 0, ok.length, null);
+            client.flush();
+
+            assertEquals("PASS", client.receive());
+            assertEquals("FAIL", client.receive());
+            assertEquals("PASS", client.receive());
+
+            // 같은 연결에서 계속 요청 가능
+            assertEquals("PASS", client.authenticate("carol", ok, 0, ok.length, null));
+
+            client.finishSending();
+            assertNull(client.receive());
+        }
+    }
+}
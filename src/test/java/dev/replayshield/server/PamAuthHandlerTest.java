@@ -1,6 +1,7 @@
 package dev.replayshield.server;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.lang.reflect.Method;
@@ -13,7 +14,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Base64;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
@@ -28,7 +28,7 @@ class PamAuthHandlerTest {
     static {
         try {
             DO_AUTH_METHOD = PamAuthHandler.class.getDeclaredMethod("doAuth", Connection.class, String.class,
-                    String.class);
+                    byte[].class);
             DO_AUTH_METHOD.setAccessible(true);
         } catch (NoSuchMethodException exception) {
             throw new ExceptionInInitializerError(exception);
@@ -98,6 +98,36 @@ class PamAuthHandlerTest {
         }
     }
 
+    @Test
+    void adjustBlockedWindowMovesOnlyTheDifference() throws Exception {
+        try (Connection conn = openConnection()) {
+            insertUser(conn, "dan", 2);
+            int oldest = insertPassword(conn, "dan", "one");
+            int middle = insertPassword(conn, "dan", "two");
+            int newest = insertPassword(conn, "dan", "three");
+            setLastUse(conn, oldest, 100);
+            setLastUse(conn, middle, 200);
+            setLastUse(conn, newest, 300);
+
+            PamAuthHandler.adjustBlockedWindow(conn, "dan", 2);
+            assertFalse(isBlocked(conn, oldest));
+            assertTrue(isBlocked(conn, middle));
+            assertTrue(isBlocked(conn, newest));
+
+            PamAuthHandler.adjustBlockedWindow(conn, "dan", 1);
+            assertFalse(isBlocked(conn, middle));
+            assertTrue(isBlocked(conn, newest));
+        }
+    }
+
+    private void setLastUse(Connection conn, int pwId, long lastUse) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE password_pool SET last_use=? WHERE id=?")) {
+            ps.setLong(1, lastUse);
+            ps.setInt(2, pwId);
+            ps.executeUpdate();
+        }
+    }
+
     private Connection openConnection() throws SQLException {
         Path dbPath = tempDir.resolve("pam-auth-" + dbCounter.incrementAndGet() + ".sqlite");
         return Db.open(dbPath);
@@ -105,7 +135,8 @@ class PamAuthHandlerTest {
 
     private String invokeDoAuth(Connection conn, String username, String password) {
         try {
-            return (String) DO_AUTH_METHOD.invoke(handler, conn, username, password);
+            return (String) DO_AUTH_METHOD.invoke(handler, conn, username,
+                    password.getBytes(StandardCharsets.UTF_8));
         } catch (ReflectiveOperationException exception) {
             throw new IllegalStateException(exception);
         }
@@ -125,7 +156,7 @@ class PamAuthHandlerTest {
                 "INSERT INTO password_pool(username, pw_hash, pw_hint, hit_count, blocked) VALUES(?, ?, ?, 0, 0)",
                 Statement.RETURN_GENERATED_KEYS)) {
             ps.setString(1, username);
-            ps.setString(2, hash(password));
+            ps.setBytes(2, hash(password));
             ps.setString(3, password.length() >= 2 ? password.substring(0, 1) + "*****" + password.charAt(password.length() - 1)
                     : "****");
             ps.executeUpdate();
@@ -180,11 +211,10 @@ class PamAuthHandlerTest {
         }
     }
 
-    private String hash(String value) {
+    private byte[] hash(String value) {
         try {
             MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashed = digest.digest(value.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hashed);
+            return digest.digest(value.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException exception) {
             throw new IllegalStateException(exception);
         }
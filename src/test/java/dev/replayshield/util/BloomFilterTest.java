@@ -0,0 +1,35 @@
+package dev.replayshield.util;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegativesAndFewFalsePositives() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(bytes("user" + i), bytes("hash" + i));
+        }
+
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(filter.mightContain(bytes("user" + i), bytes("hash" + i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(bytes("user" + i), bytes("other" + i))) {
+                falsePositives++;
+            }
+        }
+        // 목표 1% - 여유를 두고 확인
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
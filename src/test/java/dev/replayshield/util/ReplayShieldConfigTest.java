@@ -0,0 +1,82 @@
+package dev.replayshield.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReplayShieldConfigTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void missingFileAndMissingKeysUseDefaults() {
+        ReplayShieldConfig defaults = ReplayShieldConfig.defaults();
+
+        assertEquals(defaults, ReplayShieldConfig.load(tempDir.resolve("replayshield.conf")));
+        assertEquals(defaults, ReplayShieldConfig.parse("# 주석만\n\n", "test"));
+    }
+
+    @Test
+    void parsesStartupAndLiveSettings() {
+        ReplayShieldConfig config = ReplayShieldConfig.parse("""
+                server.transport = nio
+                server.tcp.enabled = yes
+                server.tcp.port = 8444
+                kdf.pbkdf2_iterations = 600_000
+                rate_limit.user.per_minute = 0
+                auth.max_concurrent = 16
+                """, "test");
+
+        assertEquals("nio", config.startup().transport());
+        assertTrue(config.startup().tcpEnabled());
+        assertEquals(8444, config.startup().tcpPort());
+        assertEquals(600_000, config.startup().pbkdf2Iterations());
+        assertEquals(0, config.live().userPerMinute());
+        assertEquals(16, config.live().maxConcurrentAuth());
+        assertEquals(ReplayShieldConfig.defaults().live().flushMaxDelayMillis(), config.live().flushMaxDelayMillis());
+    }
+
+    @Test
+    void rejectsInvalidValuesAndUnknownKeys() {
+        assertThrows(ReplayShieldException.class, () -> ReplayShieldConfig.parse("auth.max_concurrent = 0", "t"));
+        assertThrows(ReplayShieldException.class, () -> ReplayShieldConfig.parse("server.engine = fast", "t"));
+        assertThrows(ReplayShieldException.class, () -> ReplayShieldConfig.parse("flush.max_delay = 5", "t"));
+        assertThrows(ReplayShieldException.class, () -> ReplayShieldConfig.parse("server.tcp.port", "t"));
+        assertThrows(ReplayShieldException.class,
+                () -> ReplayShieldConfig.parse("server.tcp.port = 1\nserver.tcp.port = 2", "t"));
+    }
+
+    @Test
+    void reloadSwapsLiveSettingsAndKeepsPreviousOnError() throws Exception {
+        Path file = tempDir.resolve("replayshield.conf");
+        Files.writeString(file, "auth.max_concurrent = 8\n");
+        ReplayShieldConfig initial = ReplayShieldConfig.load(file);
+        List<ReplayShieldConfig.Live> applied = new ArrayList<>();
+        ConfigWatcher watcher = new ConfigWatcher(file, initial, applied::add);
+
+        // 변경 없음
+        assertFalse(watcher.reload());
+
+        Files.writeString(file, "auth.max_concurrent = 32\nserver.tcp.port = 9000\n");
+        assertTrue(watcher.reload());
+        assertEquals(1, applied.size());
+        assertEquals(32, watcher.current().live().maxConcurrentAuth());
+        // startup 항목은 재시작 전까지 기존 값
+        assertEquals(initial.startup(), watcher.current().startup());
+
+        Files.writeString(file, "auth.max_concurrent = many\n");
+        assertFalse(watcher.reload());
+        assertEquals(32, watcher.current().live().maxConcurrentAuth());
+        assertEquals(1, applied.size());
+    }
+}